@@ -0,0 +1,106 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the move generator and the per-move server work. Run with
+ * <code>mvn -P jmh test-compile exec:exec</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+
+    private static final String MATED = "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3";
+
+    private final Gson serializer = new Gson();
+    private final ChessMove[] opening = {
+            new ChessMove("e2 e4"), new ChessMove("e7 e5"),
+            new ChessMove("g1 f3"), new ChessMove("b8 c6"),
+    };
+
+    private ChessGame start;
+    private ChessGame middlegame;
+    private ChessGame mated;
+    private String middlegameJson;
+    private final MoveList moveList = new MoveList();
+
+    @Setup
+    public void setup() {
+        start = new ChessGame();
+        middlegame = ChessGame.fromFen(PerftTests.KIWIPETE);
+        mated = ChessGame.fromFen(MATED);
+        middlegameJson = serializer.toJson(middlegame, ChessGame.class);
+    }
+
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        long pieces = middlegame.getBoard().getOccupancy(middlegame.getTeamTurn());
+        while (pieces != 0) {
+            var position = ChessBoard.positionOf(Long.numberOfTrailingZeros(pieces));
+            pieces &= pieces - 1;
+            blackhole.consume(middlegame.validMoves(position));
+        }
+    }
+
+    @Benchmark
+    public Object legalMoves() {
+        return middlegame.legalMoves();
+    }
+
+    @Benchmark
+    public int legalMovesPacked() {
+        middlegame.legalMoves(moveList);
+        return moveList.size();
+    }
+
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        var game = new ChessGame();
+        for (var move : opening) {
+            game.makeMove(move);
+        }
+        return game;
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return mated.isInCheckmate(ChessGame.TeamColor.WHITE) | middlegame.isInCheckmate(ChessGame.TeamColor.WHITE);
+    }
+
+    @Benchmark
+    public String toFen() {
+        return middlegame.toFen();
+    }
+
+    @Benchmark
+    public ChessGame gsonRoundTrip() {
+        return serializer.fromJson(serializer.toJson(middlegame, ChessGame.class), ChessGame.class);
+    }
+
+    @Benchmark
+    public ChessGame gsonParse() {
+        return serializer.fromJson(middlegameJson, ChessGame.class);
+    }
+
+    /**
+     * Nodes per second is 97862 divided by the reported time
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long perftKiwipete3() {
+        return Perft.perft(middlegame, 3);
+    }
+
+    @Benchmark
+    public String startFen() {
+        return start.toFen();
+    }
+}
@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 import static chess.ChessPiece.PieceType.*;
 import static chess.ChessGame.TeamColor.*;
 
@@ -17,6 +16,26 @@ public class ChessBoard implements Cloneable {
     private ChessPosition whiteKing = null;
     private ChessPosition blackKing = null;
 
+    /*
+     * Bitboard view of the board: one long per piece (color * 6 + type), bit n
+     * set when that piece stands on square n (a1 = 0, h1 = 7, h8 = 63). These are
+     * rebuilt from the 8x8 array whenever it is replaced (setBoard, Gson), so only
+     * the array is ever serialized.
+     */
+    private transient long[] pieceBitboards = new long[12];
+    private transient long whiteOccupancy = 0L;
+    private transient long blackOccupancy = 0L;
+    private transient long pieceKey = 0L;
+    private transient int materialScore = 0;
+    private transient boolean bitboardsReady = false;
+
+    /*
+     * FEN placement text of each rank (index row - 1), built on first use and
+     * dropped when a piece on that rank changes, so after a move only the one
+     * or two ranks it touched are written out again.
+     */
+    private transient String[] rankFen = new String[8];
+
     public ChessBoard() {
     }
 
@@ -38,6 +57,8 @@ public class ChessBoard implements Cloneable {
 
     public void setBoard(ChessPiece[][] board) {
         this.board = board.clone();
+        bitboardsReady = false;
+        Arrays.fill(rankFen, null);
     }
 
     @Override
@@ -46,12 +67,12 @@ public class ChessBoard implements Cloneable {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
+        return Arrays.equals(bitboards(), that.bitboards());
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Arrays.hashCode(bitboards());
     }
 
     @Override
@@ -63,6 +84,8 @@ public class ChessBoard implements Cloneable {
                 gameState[i] = Arrays.copyOf(clone.getBoard()[i], 8);
             }
             clone.board = gameState;
+            clone.pieceBitboards = pieceBitboards.clone();
+            clone.rankFen = rankFen.clone();
             return clone;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError();
@@ -76,7 +99,46 @@ public class ChessBoard implements Cloneable {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow()-1][position.getColumn()-1] = piece;
+        addPiece(squareIndex(position), piece);
+    }
+
+    /**
+     * Adds a chess piece to the chessboard, or clears the square when piece is
+     * null
+     *
+     * @param square where to add the piece to, 0 for a1 through 63 for h8
+     * @param piece  the piece to add
+     */
+    public void addPiece(int square, ChessPiece piece) {
+        bitboards();
+        int row = square >>> 3;
+        int col = square & 7;
+        long bit = 1L << square;
+        var old = board[row][col];
+        if (old != null) {
+            int index = bitboardIndex(old.getTeamColor(), old.getPieceType());
+            pieceBitboards[index] &= ~bit;
+            pieceKey ^= Zobrist.piece(index, square);
+            materialScore -= PieceSquareTables.score(index, square);
+            if (old.getTeamColor() == WHITE) {
+                whiteOccupancy &= ~bit;
+            } else {
+                blackOccupancy &= ~bit;
+            }
+        }
+        board[row][col] = piece;
+        rankFen[row] = null;
+        if (piece != null) {
+            int index = bitboardIndex(piece.getTeamColor(), piece.getPieceType());
+            pieceBitboards[index] |= bit;
+            pieceKey ^= Zobrist.piece(index, square);
+            materialScore += PieceSquareTables.score(index, square);
+            if (piece.getTeamColor() == WHITE) {
+                whiteOccupancy |= bit;
+            } else {
+                blackOccupancy |= bit;
+            }
+        }
     }
 
     /**
@@ -91,10 +153,172 @@ public class ChessBoard implements Cloneable {
     }
 
 
+    /**
+     * Gets the underlying 8x8 array, indexed [row - 1][column - 1]. Changes made
+     * directly to the array are not seen by the bitboards; use addPiece instead.
+     */
     public ChessPiece[][] getBoard() {
         return board;
     }
 
+    /**
+     * @return the square index (0 for a1 through 63 for h8) of a position
+     */
+    public static int squareIndex(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    /**
+     * @return the position of a square index (0 for a1 through 63 for h8)
+     */
+    public static ChessPosition positionOf(int square) {
+        return ChessPosition.ofSquare(square);
+    }
+
+    /**
+     * Gets a chess piece by square index (0 for a1 through 63 for h8)
+     */
+    public ChessPiece getPiece(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
+    /**
+     * @return bitboard of every square holding the given piece
+     */
+    public long getBitboard(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return bitboards()[bitboardIndex(color, type)];
+    }
+
+    /**
+     * @return bitboard of every square holding a piece of the given team
+     */
+    public long getOccupancy(ChessGame.TeamColor color) {
+        bitboards();
+        return color == WHITE ? whiteOccupancy : blackOccupancy;
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupancy() {
+        bitboards();
+        return whiteOccupancy | blackOccupancy;
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square, by looking
+     * outward from the square along knight, king, pawn and sliding patterns
+     *
+     * @param position the square to test
+     * @param attacker the team that may be attacking it
+     * @return True if a piece of that team attacks the square
+     */
+    public boolean isSquareAttacked(ChessPosition position, ChessGame.TeamColor attacker) {
+        return isSquareAttacked(squareIndex(position), attacker);
+    }
+
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor attacker) {
+        return attackersOf(square, attacker, getOccupancy()) != 0;
+    }
+
+    /**
+     * @param occupied the squares that block sliding pieces, which lets callers
+     *                 look through a piece that is about to move
+     * @return bitboard of the attacker's pieces that attack the square
+     */
+    long attackersOf(int square, ChessGame.TeamColor attacker, long occupied) {
+        var bitboards = bitboards();
+        int base = attacker.ordinal() * 6;
+        var defender = (attacker == WHITE) ? BLACK : WHITE;
+        long queens = bitboards[base + QUEEN.ordinal()];
+        return (MoveTables.pawnAttacks(square, defender) & bitboards[base + PAWN.ordinal()])
+                | (MoveTables.knight(square) & bitboards[base + KNIGHT.ordinal()])
+                | (MoveTables.king(square) & bitboards[base + KING.ordinal()])
+                | (MoveTables.rook(square, occupied) & (bitboards[base + ROOK.ordinal()] | queens))
+                | (MoveTables.bishop(square, occupied) & (bitboards[base + BISHOP.ordinal()] | queens));
+    }
+
+    /**
+     * @return the Zobrist hash of the pieces on the board, kept up to date by
+     * addPiece
+     */
+    public long getPieceKey() {
+        bitboards();
+        return pieceKey;
+    }
+
+    /**
+     * @param row the rank, 0 for rank 1 through 7 for rank 8
+     * @return the FEN piece placement of one rank, such as "4P3"
+     */
+    String rankFen(int row) {
+        var text = rankFen[row];
+        if (text == null) {
+            var builder = new StringBuilder(8);
+            int empty = 0;
+            for (var piece : board[row]) {
+                if (piece == null) {
+                    empty++;
+                } else {
+                    if (empty != 0) {
+                        builder.append((char) ('0' + empty));
+                        empty = 0;
+                    }
+                    builder.append(piece.toFen());
+                }
+            }
+            if (empty != 0) {
+                builder.append((char) ('0' + empty));
+            }
+            text = builder.toString();
+            rankFen[row] = text;
+        }
+        return text;
+    }
+
+    /**
+     * @return material plus piece-square score in centipawns, positive when
+     * White is ahead, kept up to date by addPiece
+     */
+    public int getMaterialScore() {
+        bitboards();
+        return materialScore;
+    }
+
+    private static int bitboardIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    private long[] bitboards() {
+        if (!bitboardsReady) {
+            rebuildBitboards();
+        }
+        return pieceBitboards;
+    }
+
+    private void rebuildBitboards() {
+        pieceBitboards = new long[12];
+        whiteOccupancy = 0L;
+        blackOccupancy = 0L;
+        pieceKey = 0L;
+        materialScore = 0;
+        for (int square = 0; square < 64; square++) {
+            var piece = getPiece(square);
+            if (piece != null) {
+                int index = bitboardIndex(piece.getTeamColor(), piece.getPieceType());
+                pieceBitboards[index] |= 1L << square;
+                pieceKey ^= Zobrist.piece(index, square);
+                materialScore += PieceSquareTables.score(index, square);
+                if (piece.getTeamColor() == WHITE) {
+                    whiteOccupancy |= 1L << square;
+                } else {
+                    blackOccupancy |= 1L << square;
+                }
+            }
+        }
+        bitboardsReady = true;
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
@@ -103,14 +327,16 @@ public class ChessBoard implements Cloneable {
         ChessPiece.PieceType[] backRow = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK};
 
         board = new ChessPiece[8][8];
-        whiteKing = new ChessPosition(1, 5);
-        blackKing = new ChessPosition(8, 5);
+        bitboardsReady = false;
+        Arrays.fill(rankFen, null);
+        whiteKing = ChessPosition.of(1, 5);
+        blackKing = ChessPosition.of(8, 5);
 
         for (int col = 0; col < backRow.length; col++) {
-            addPiece(new ChessPosition(1, col + 1), new ChessPiece(WHITE, backRow[col]));
-            addPiece(new ChessPosition(2, col + 1), new ChessPiece(WHITE, PAWN));
-            addPiece(new ChessPosition(8, col + 1), new ChessPiece(BLACK, backRow[col]));
-            addPiece(new ChessPosition(7, col + 1), new ChessPiece(BLACK, PAWN));
+            addPiece(ChessPosition.of(1, col + 1), ChessPiece.of(WHITE, backRow[col]));
+            addPiece(ChessPosition.of(2, col + 1), ChessPiece.of(WHITE, PAWN));
+            addPiece(ChessPosition.of(8, col + 1), ChessPiece.of(BLACK, backRow[col]));
+            addPiece(ChessPosition.of(7, col + 1), ChessPiece.of(BLACK, PAWN));
         }
     }
 
@@ -1,6 +1,9 @@
 package chess;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
@@ -14,6 +17,13 @@ import java.util.HashMap;
  */
 public class ChessGame {
 
+    /**
+     * The first two bytes of every game written by toBytes. Readers reject
+     * versions they do not know, so the layout can change later.
+     */
+    public static final byte BINARY_MAGIC = 0x43;
+    public static final byte BINARY_VERSION = 1;
+
     private TeamColor currentPlayer = TeamColor.WHITE;
     private ChessBoard board = new ChessBoard();
     private ChessPosition enPassantPosition = null;
@@ -22,11 +32,77 @@ public class ChessGame {
     private boolean whiteCanCastleLeft = true;
     private boolean blackCanCastleLeft = true;
     public boolean gameOver = false;
+    private int halfmoveClock = 0;
+    private int fullmoveNumber = 1;
+
+    /*
+     * Zobrist keys of the positions before each move, oldest first. Only the
+     * last halfmoveClock entries can repeat, since a capture or pawn move makes
+     * every earlier position unreachable, so makeMove drops the rest.
+     */
+    private long[] history = new long[16];
+    private int historySize = 0;
+
+    /*
+     * The moves made through makeMove since this object was created or
+     * loaded, as packed moves without flags, oldest first. Stores that save
+     * a game as a move log append these instead of rewriting the game.
+     */
+    private transient int[] moveLog = new int[16];
+    private transient int moveLogSize = 0;
+
+    private transient GameStatus status = null;
+    private transient String fen = null;
+
+    /*
+     * The legal moves packed for clients and the key of the position they
+     * are for. Copies carry them, so every copy of a stored game handed to
+     * the players in a room shares one list until someone moves.
+     */
+    private transient String packedLegalMoves = null;
+    private transient long packedLegalMovesKey;
+    private transient MoveUndo[] undoStack = new MoveUndo[16];
+    private transient int undoDepth = 0;
+    private transient LegalMoveGenerator generator = new LegalMoveGenerator(this);
+    private transient MoveList scratchMoves = new MoveList();
 
     public ChessGame() {
         board.resetBoard();
     }
 
+    private ChessGame(ChessBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Makes an independent copy of the game, position history included, so it
+     * can be searched on another thread. Moves still waiting for undoMove are
+     * not copied.
+     *
+     * @return the copy
+     */
+    public ChessGame copy() {
+        var copy = new ChessGame(board.clone());
+        copy.currentPlayer = currentPlayer;
+        copy.enPassantPosition = enPassantPosition;
+        copy.whiteCanCastleRight = whiteCanCastleRight;
+        copy.blackCanCastleRight = blackCanCastleRight;
+        copy.whiteCanCastleLeft = whiteCanCastleLeft;
+        copy.blackCanCastleLeft = blackCanCastleLeft;
+        copy.gameOver = gameOver;
+        copy.halfmoveClock = halfmoveClock;
+        copy.fullmoveNumber = fullmoveNumber;
+        copy.history = Arrays.copyOf(history, Math.max(historySize, 16));
+        copy.historySize = historySize;
+        copy.moveLog = Arrays.copyOf(moveLog, Math.max(moveLogSize, 16));
+        copy.moveLogSize = moveLogSize;
+        copy.status = status;
+        copy.fen = fen;
+        copy.packedLegalMoves = packedLegalMoves;
+        copy.packedLegalMovesKey = packedLegalMovesKey;
+        return copy;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -41,6 +117,8 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         currentPlayer = team;
+        status = null;
+        fen = null;
     }
 
     @Override
@@ -54,7 +132,62 @@ public class ChessGame {
 
     @Override
     public int hashCode() {
-        return Objects.hash(currentPlayer, board, enPassantPosition, whiteCanCastleRight, blackCanCastleRight, whiteCanCastleLeft, blackCanCastleLeft, gameOver);
+        return Long.hashCode(getZobristKey());
+    }
+
+    /**
+     * Gets a 64-bit Zobrist key of the position: the pieces, the team to move,
+     * the castling rights and the en passant file when a capture there is
+     * possible. Equal positions always have equal keys. The piece part is
+     * updated by the board as pieces move, so this takes constant time.
+     *
+     * @return the position's key
+     */
+    public long getZobristKey() {
+        long key = board.getPieceKey();
+        if (currentPlayer == TeamColor.BLACK) {
+            key ^= Zobrist.blackToMove();
+        }
+        if (whiteCanCastleRight) {
+            key ^= Zobrist.castling(0);
+        }
+        if (whiteCanCastleLeft) {
+            key ^= Zobrist.castling(1);
+        }
+        if (blackCanCastleRight) {
+            key ^= Zobrist.castling(2);
+        }
+        if (blackCanCastleLeft) {
+            key ^= Zobrist.castling(3);
+        }
+        if (enPassantPosition != null && canCaptureEnPassant()) {
+            key ^= Zobrist.enPassantFile(enPassantPosition.getColumn() - 1);
+        }
+        return key;
+    }
+
+    /**
+     * Gets the static evaluation of the position: material plus piece-square
+     * bonuses (see PieceSquareTables). The board updates it as pieces move, so
+     * this takes constant time.
+     *
+     * @return the score in centipawns for the team whose turn it is
+     */
+    public int getEvaluation() {
+        int score = board.getMaterialScore();
+        return (currentPlayer == TeamColor.WHITE) ? score : -score;
+    }
+
+    private boolean canCaptureEnPassant() {
+        int square = ChessBoard.squareIndex(enPassantPosition);
+        long neighbours = 0L;
+        if ((square & 7) > 0) {
+            neighbours |= 1L << (square - 1);
+        }
+        if ((square & 7) < 7) {
+            neighbours |= 1L << (square + 1);
+        }
+        return (neighbours & board.getBitboard(currentPlayer, ChessPiece.PieceType.PAWN)) != 0;
     }
 
     /**
@@ -65,6 +198,74 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * The state of a position, always from the point of view of the team whose
+     * turn it is
+     */
+    public enum GameStatus {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE;
+
+        /**
+         * @return True if the status ends the game: checkmate, stalemate or a
+         * draw by repetition or the fifty-move rule
+         */
+        public boolean isFinal() {
+            return this != ONGOING && this != CHECK;
+        }
+    }
+
+    /**
+     * Gets the status of the current position for the team whose turn it is.
+     * It is worked out once per position by makeMove and cached, so reading it
+     * repeatedly costs nothing.
+     *
+     * @return the status of the team to move
+     */
+    public GameStatus getStatus() {
+        if (status == null) {
+            status = evaluateStatus();
+        }
+        return status;
+    }
+
+    private GameStatus evaluateStatus() {
+        boolean inCheck = isInCheck(currentPlayer);
+        if (noMoves(currentPlayer)) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (halfmoveClock >= 100) {
+            return GameStatus.FIFTY_MOVE_RULE;
+        }
+        if (repetitions() >= 2) {
+            return GameStatus.THREEFOLD_REPETITION;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
+
+    /**
+     * Counts how many times the current position has already occurred since
+     * the last capture or pawn move. Only positions with the same team to move
+     * can match, so every other entry is skipped.
+     *
+     * @return the number of earlier occurrences of the current position
+     */
+    public int repetitions() {
+        long key = getZobristKey();
+        int oldest = Math.max(0, historySize - halfmoveClock);
+        int count = 0;
+        for (int i = historySize - 2; i >= oldest; i -= 2) {
+            if (history[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
 
 //    public Map<String, ArrayList<String>> getAllMoves() {
 //        Map<String, ArrayList<String>> whiteMoves = new HashMap<>();
@@ -109,25 +310,53 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        if (this.board.getPiece(startPosition) == null) {
-            return null;
-        }
         var piece = this.board.getPiece(startPosition);
-        var moves = piece.pieceMoves(this.board, startPosition);
-        ArrayList<ChessMove> newMoves = new ArrayList<>();
-        for (var move : moves) {
-            var newBoard = board.clone();
-            movePieceOnBoard(newBoard, move);
-            if (!inCheckHelper(newBoard, piece.getTeamColor())) {
-                newMoves.add(move);
-            }
-        }
-        castleMove(startPosition, newMoves);
-        var enPassant = enPassantMove(startPosition);
-        if (enPassant != null) {
-            newMoves.add(enPassant);
+        if (piece == null) {
+            return null;
         }
-        return newMoves;
+        var moves = new MoveList(32);
+        generator.generate(piece.getTeamColor(), 1L << ChessBoard.squareIndex(startPosition), moves, false);
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Gets every legal move for the team whose turn it is
+     *
+     * @return Set of legal moves, empty if the team has none
+     */
+    public Collection<ChessMove> legalMoves() {
+        var moves = new MoveList();
+        legalMoves(moves);
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Fills a move list with every legal move for the team whose turn it is,
+     * as packed moves (see PackedMove). The list is cleared first, so one list
+     * can be reused for every position without allocating.
+     *
+     * @param moves the list to fill
+     */
+    public void legalMoves(MoveList moves) {
+        moves.clear();
+        generator.generate(currentPlayer, ~0L, moves, false);
+    }
+
+    /**
+     * Gets every legal move for the team whose turn it is, packed with
+     * PackedMove.pack. The string is kept until the position changes.
+     *
+     * @return the packed moves, empty if the team has none
+     */
+    public String packedLegalMoves() {
+        long key = getZobristKey();
+        if (packedLegalMoves == null || packedLegalMovesKey != key) {
+            var moves = new MoveList();
+            legalMoves(moves);
+            packedLegalMoves = PackedMove.pack(moves);
+            packedLegalMovesKey = key;
+        }
+        return packedLegalMoves;
     }
 
     /**
@@ -150,104 +379,178 @@ public class ChessGame {
         if (!moves.contains(move)) {
             throw new InvalidMoveException("Not a valid move");
         }
-        movePieceOnBoard(this.board, move);
-        if (currentPlayer.equals(TeamColor.WHITE)) {
-            setTeamTurn(TeamColor.BLACK);
-        } else {
-            setTeamTurn(TeamColor.WHITE);
+        int packed = PackedMove.encode(move);
+        applyMove(packed);
+        undoDepth = 0;
+        if (moveLogSize == moveLog.length) {
+            moveLog = Arrays.copyOf(moveLog, moveLogSize * 2);
+        }
+        moveLog[moveLogSize++] = packed;
+        if (halfmoveClock == 0) {
+            historySize = 0;
+        }
+        status = evaluateStatus();
+        if (status.isFinal()) {
+            gameOver = true;
         }
-        var piece = board.getPiece(move.getEndPosition());
-        if (piece.getPieceType().equals(ChessPiece.PieceType.PAWN)) {
-            if (didPawnJump(move)) {
-                enPassantPosition = new ChessPosition(move.getEndPosition().getRow(), move.getEndPosition().getColumn());
+    }
+
+    /**
+     * Makes a move in place without checking that it is legal, and records what
+     * is needed to take it back. Every applyMove must be matched by an undoMove
+     * before the game is used for anything else.
+     *
+     * @param move a move that is at least pseudo-legal in the current position
+     */
+    public void applyMove(ChessMove move) {
+        applyMove(PackedMove.encode(move));
+    }
+
+    /**
+     * Same as applyMove(ChessMove) for a packed move (see PackedMove). Flags on
+     * the move are not needed; en passant and castling are recognised from the
+     * board.
+     *
+     * @param move a move that is at least pseudo-legal in the current position
+     */
+    public void applyMove(int move) {
+        if (undoDepth == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        if (undoStack[undoDepth] == null) {
+            undoStack[undoDepth] = new MoveUndo();
+        }
+        var undo = undoStack[undoDepth++];
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[historySize++] = getZobristKey();
+
+        int start = PackedMove.from(move);
+        int end = PackedMove.to(move);
+        var piece = board.getPiece(start);
+        var color = piece.getTeamColor();
+        var type = piece.getPieceType();
+        undo.move = move;
+        undo.movedPiece = piece;
+        undo.capturedPiece = board.getPiece(end);
+        undo.capturedSquare = end;
+        undo.enPassantPosition = enPassantPosition;
+        undo.whiteCanCastleRight = whiteCanCastleRight;
+        undo.blackCanCastleRight = blackCanCastleRight;
+        undo.whiteCanCastleLeft = whiteCanCastleLeft;
+        undo.blackCanCastleLeft = blackCanCastleLeft;
+        undo.whiteKing = board.getWhiteKing();
+        undo.blackKing = board.getBlackKing();
+        undo.currentPlayer = currentPlayer;
+        undo.status = status;
+        undo.halfmoveClock = halfmoveClock;
+        status = null;
+        fen = null;
+
+        if (type == ChessPiece.PieceType.PAWN && (start & 7) != (end & 7) && undo.capturedPiece == null) {
+            undo.capturedSquare = (start & ~7) | (end & 7);
+            undo.capturedPiece = board.getPiece(undo.capturedSquare);
+            board.addPiece(undo.capturedSquare, null);
+        }
+        board.addPiece(start, null);
+        var promotion = PackedMove.promotion(move);
+        board.addPiece(end, (promotion != null) ? ChessPiece.of(color, promotion) : piece);
+
+        if (type == ChessPiece.PieceType.KING) {
+            if (color == TeamColor.WHITE) {
+                board.setWhiteKing(ChessBoard.positionOf(end));
             } else {
-                enPassantPosition = null;
+                board.setBlackKing(ChessBoard.positionOf(end));
             }
+            if (Math.abs(end - start) == 2) {
+                moveCastlingRook(start, end, false);
+            }
+        }
+
+        if (type == ChessPiece.PieceType.PAWN && Math.abs(end - start) == 16) {
+            enPassantPosition = ChessBoard.positionOf(end);
         } else {
             enPassantPosition = null;
         }
-        if (piece.getPieceType().equals(ChessPiece.PieceType.KING)) {
-            if (Math.abs(move.getEndPosition().getColumn() - move.getStartPosition().getColumn()) == 2) {
-                if (move.getEndPosition().equals(new ChessPosition(1, 3))) {
-                    var rookPiece = board.getPiece(new ChessPosition(1, 1));
-                    board.addPiece(new ChessPosition(1, 1), null);
-                    board.addPiece(new ChessPosition(1, 4), rookPiece);
-                }
-                if (move.getEndPosition().equals(new ChessPosition(1, 7))) {
-                    var rookPiece = board.getPiece(new ChessPosition(1, 8));
-                    board.addPiece(new ChessPosition(1, 8), null);
-                    board.addPiece(new ChessPosition(1, 6), rookPiece);
-                }
-                if (move.getEndPosition().equals(new ChessPosition(8, 3))) {
-                    var rookPiece = board.getPiece(new ChessPosition(8, 1));
-                    board.addPiece(new ChessPosition(8, 1), null);
-                    board.addPiece(new ChessPosition(8, 4), rookPiece);
-                }
-                if (move.getEndPosition().equals(new ChessPosition(8, 7))) {
-                    var rookPiece = board.getPiece(new ChessPosition(8, 8));
-                    board.addPiece(new ChessPosition(8, 8), null);
-                    board.addPiece(new ChessPosition(8, 6), rookPiece);
-                }
-            }
+        updateCastle(start);
+        updateCastle(end);
+        if (type == ChessPiece.PieceType.PAWN || undo.capturedPiece != null) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
         }
-
-        updateCastle(piece, move.getStartPosition());
+        if (color == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
+        currentPlayer = opponent(color);
     }
 
+    /**
+     * Takes back the last move made with applyMove
+     */
+    public void undoMove() {
+        var undo = undoStack[--undoDepth];
+        historySize--;
+        int start = PackedMove.from(undo.move);
+        int end = PackedMove.to(undo.move);
+
+        board.addPiece(end, null);
+        board.addPiece(start, undo.movedPiece);
+        if (undo.capturedPiece != null) {
+            board.addPiece(undo.capturedSquare, undo.capturedPiece);
+        }
+        if (undo.movedPiece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(end - start) == 2) {
+            moveCastlingRook(start, end, true);
+        }
+
+        enPassantPosition = undo.enPassantPosition;
+        whiteCanCastleRight = undo.whiteCanCastleRight;
+        blackCanCastleRight = undo.blackCanCastleRight;
+        whiteCanCastleLeft = undo.whiteCanCastleLeft;
+        blackCanCastleLeft = undo.blackCanCastleLeft;
+        board.setWhiteKing(undo.whiteKing);
+        board.setBlackKing(undo.blackKing);
+        currentPlayer = undo.currentPlayer;
+        status = undo.status;
+        fen = null;
+        halfmoveClock = undo.halfmoveClock;
+        if (currentPlayer == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
+        undo.movedPiece = null;
+        undo.capturedPiece = null;
+    }
 
-    private void movePieceOnBoard(ChessBoard newBoard, ChessMove move) {
-        if (move.getPromotionPiece() != null) {
-            ChessPiece piece = new ChessPiece(newBoard.getPiece(move.getStartPosition()).getTeamColor(), move.getPromotionPiece());
-            newBoard.addPiece(move.getEndPosition(), piece);
-            newBoard.addPiece(move.getStartPosition(), null);
-        } else {
-            ChessPiece piece = newBoard.getPiece(move.getStartPosition());
-            if (piece.getPieceType().equals(ChessPiece.PieceType.KING)) {
-                if (piece.getTeamColor().equals(TeamColor.WHITE)) {
-                    newBoard.setWhiteKing(move.getEndPosition());
-                } else {
-                    newBoard.setBlackKing(move.getEndPosition());
-                }
-            }
-            if (piece.getPieceType().equals(ChessPiece.PieceType.PAWN)
-                    && move.getStartPosition().getColumn() != move.getEndPosition().getColumn()
-                    && board.getPiece(move.getEndPosition()) == null) {
-                var position = new ChessPosition(move.getStartPosition().getRow(), move.getEndPosition().getColumn());
-                newBoard.addPiece(position, null);
-            }
-            newBoard.addPiece(move.getEndPosition(), piece);
-            newBoard.addPiece(move.getStartPosition(), null);
+    private void moveCastlingRook(int kingStart, int kingEnd, boolean undo) {
+        boolean kingSide = kingEnd > kingStart;
+        int rookStart = kingSide ? kingStart + 3 : kingStart - 4;
+        int rookEnd = kingSide ? kingStart + 1 : kingStart - 1;
+        int from = undo ? rookEnd : rookStart;
+        int to = undo ? rookStart : rookEnd;
+        var rookPiece = board.getPiece(from);
+        board.addPiece(from, null);
+        board.addPiece(to, rookPiece);
+    }
 
-        }
+    boolean leavesKingSafe(int move, TeamColor teamColor) {
+        applyMove(move);
+        boolean safe = !inCheckHelper(board, teamColor);
+        undoMove();
+        return safe;
     }
 
 
     private boolean inCheckHelper(ChessBoard board, TeamColor teamColor) {
-        setKingsPosition(board);
-        ChessPosition kingPosition;
-        if (teamColor.equals(TeamColor.WHITE)) {
-            kingPosition = board.getWhiteKing();
-        } else {
-            kingPosition = board.getBlackKing();
-        }
-        for (int x = 1; x < 9; x++) {
-            for (int y = 1; y < 9; y++) {
-                var position = new ChessPosition(y, x);
-                if (board.getPiece(position) != null) {
-                    var piece = board.getPiece(position);
-                    var moves = piece.pieceMoves(board, position);
-                    if (piece.getTeamColor() != teamColor
-                            && (moves.contains(new ChessMove(position, kingPosition, null))
-                            || moves.contains(new ChessMove(position, kingPosition, ChessPiece.PieceType.QUEEN))
-                            || moves.contains(new ChessMove(position, kingPosition, ChessPiece.PieceType.ROOK))
-                            || moves.contains(new ChessMove(position, kingPosition, ChessPiece.PieceType.BISHOP))
-                            || moves.contains(new ChessMove(position, kingPosition, ChessPiece.PieceType.KNIGHT)))) {
-                        return true;
-                    }
-                }
-            }
+        long king = board.getBitboard(teamColor, ChessPiece.PieceType.KING);
+        if (king == 0) {
+            return false;
         }
-        return false;
+        return board.isSquareAttacked(Long.numberOfTrailingZeros(king), opponent(teamColor));
+    }
+
+    private static TeamColor opponent(TeamColor teamColor) {
+        return (teamColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
     }
 
     /**
@@ -261,20 +564,10 @@ public class ChessGame {
     }
 
 
-    private boolean noMoves(ChessBoard board, TeamColor teamColor) {
-        for (int x = 1; x < 9; x++) {
-            for (int y = 1; y < 9; y++) {
-                var position = new ChessPosition(y, x);
-                var piece = board.getPiece(position);
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    var moves = validMoves(position);
-                    if (!moves.isEmpty()) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+    private boolean noMoves(TeamColor teamColor) {
+        scratchMoves.clear();
+        generator.generate(teamColor, ~0L, scratchMoves, true);
+        return scratchMoves.isEmpty();
     }
 
 
@@ -288,7 +581,7 @@ public class ChessGame {
         if (!isInCheck(teamColor)) {
             return false;
         }
-        if (noMoves(board, teamColor)) {
+        if (noMoves(teamColor)) {
             gameOver = true;
             return true;
         }
@@ -306,7 +599,7 @@ public class ChessGame {
         if (isInCheck(teamColor)) {
             return false;
         }
-        if (noMoves(board, teamColor)) {
+        if (noMoves(teamColor)) {
             gameOver = true;
             return true;
         }
@@ -322,6 +615,9 @@ public class ChessGame {
         this.board = null;
         setKingsPosition(board);
         this.board = board;
+        status = null;
+        fen = null;
+        historySize = 0;
         whiteCanCastleRight = true;
         blackCanCastleRight = true;
         whiteCanCastleLeft = true;
@@ -330,18 +626,13 @@ public class ChessGame {
 
 
     private void setKingsPosition(ChessBoard board) {
-        for (int x = 1; x < 9; x++) {
-            for (int y = 1; y < 9; y++) {
-                var position = new ChessPosition(y, x);
-                var piece = board.getPiece(position);
-                if (piece != null && piece.getPieceType().equals(ChessPiece.PieceType.KING)) {
-                    if (piece.getTeamColor().equals(TeamColor.WHITE)) {
-                        board.setWhiteKing(position);
-                    } else {
-                        board.setBlackKing(position);
-                    }
-                }
-            }
+        long whiteKings = board.getBitboard(TeamColor.WHITE, ChessPiece.PieceType.KING);
+        if (whiteKings != 0) {
+            board.setWhiteKing(ChessBoard.positionOf(Long.numberOfTrailingZeros(whiteKings)));
+        }
+        long blackKings = board.getBitboard(TeamColor.BLACK, ChessPiece.PieceType.KING);
+        if (blackKings != 0) {
+            board.setBlackKing(ChessBoard.positionOf(Long.numberOfTrailingZeros(blackKings)));
         }
     }
 
@@ -354,206 +645,354 @@ public class ChessGame {
         return board;
     }
 
-    private boolean didPawnJump(ChessMove move) {
-        return Math.abs(move.getEndPosition().getRow() - move.getStartPosition().getRow()) == 2;
+    /*
+     * Castling rights are lost for good once anything leaves or lands on the
+     * king's or rook's home square.
+     */
+    private void updateCastle(int square) {
+        switch (square) {
+            case 0 -> whiteCanCastleLeft = false;
+            case 4 -> {
+                whiteCanCastleLeft = false;
+                whiteCanCastleRight = false;
+            }
+            case 7 -> whiteCanCastleRight = false;
+            case 56 -> blackCanCastleLeft = false;
+            case 60 -> {
+                blackCanCastleLeft = false;
+                blackCanCastleRight = false;
+            }
+            case 63 -> blackCanCastleRight = false;
+            default -> { }
+        }
     }
 
+    ChessPosition getEnPassantPosition() {
+        return enPassantPosition;
+    }
 
-    private ChessMove enPassantMove(ChessPosition startPosition) {
-        if (enPassantPosition == null) {
-            return null;
-        }
-        var piece = board.getPiece(startPosition);
-        var pieceColor = piece.getTeamColor();
-        if (piece.getPieceType() != ChessPiece.PieceType.PAWN) {
-            return null;
-        }
-        ChessPosition endPosition = null;
-        if (pieceColor.equals(TeamColor.WHITE)) {
-            if (enPassantPosition.equals(new ChessPosition(startPosition.getRow(), startPosition.getColumn() + 1))) {
-                endPosition = new ChessPosition(startPosition.getRow() + 1, startPosition.getColumn() + 1);
-            }
-            if (enPassantPosition.equals(new ChessPosition(startPosition.getRow(), startPosition.getColumn() - 1))) {
-                endPosition = new ChessPosition(startPosition.getRow() + 1, startPosition.getColumn() - 1);
-            }
+    /**
+     * @param enPassantPosition the pawn that just moved two squares, or null
+     */
+    void setEnPassantPosition(ChessPosition enPassantPosition) {
+        this.enPassantPosition = enPassantPosition;
+        status = null;
+        fen = null;
+    }
 
-        } else {
-            if (enPassantPosition.equals(new ChessPosition(startPosition.getRow(), startPosition.getColumn() + 1))) {
-                endPosition = new ChessPosition(startPosition.getRow() - 1, startPosition.getColumn() + 1);
-            }
-            if (enPassantPosition.equals(new ChessPosition(startPosition.getRow(), startPosition.getColumn() - 1))) {
-                endPosition = new ChessPosition(startPosition.getRow() - 1, startPosition.getColumn() - 1);
+    void setCanCastle(TeamColor teamColor, boolean kingSide, boolean canCastle) {
+        status = null;
+        fen = null;
+        if (teamColor == TeamColor.WHITE) {
+            if (kingSide) {
+                whiteCanCastleRight = canCastle;
+            } else {
+                whiteCanCastleLeft = canCastle;
             }
+        } else if (kingSide) {
+            blackCanCastleRight = canCastle;
+        } else {
+            blackCanCastleLeft = canCastle;
         }
-        if (endPosition == null) {
-            return null;
+    }
+
+    boolean canCastle(TeamColor teamColor, boolean kingSide) {
+        if (teamColor == TeamColor.WHITE) {
+            return kingSide ? whiteCanCastleRight : whiteCanCastleLeft;
         }
-        return new ChessMove(startPosition, endPosition, null);
+        return kingSide ? blackCanCastleRight : blackCanCastleLeft;
     }
 
 
-    private void updateCastle(ChessPiece piece, ChessPosition startPosition) {
-        if (piece.getPieceType().equals(ChessPiece.PieceType.KING)) {
-            if (piece.getTeamColor().equals(TeamColor.WHITE)) {
-                whiteCanCastleRight = false;
-                whiteCanCastleLeft = false;
-            } else {
-                blackCanCastleRight = false;
-                blackCanCastleLeft = false;
-            }
-        } else if (piece.getPieceType().equals(ChessPiece.PieceType.ROOK)) {
-            if (piece.getTeamColor().equals(TeamColor.WHITE)) {
-                if (startPosition.equals(new ChessPosition(1, 1))) {
-                    whiteCanCastleLeft = false;
-                }
-                if (startPosition.equals(new ChessPosition(1, 8))) {
-                    whiteCanCastleRight = false;
-                } else {
-                    if (startPosition.equals(new ChessPosition(8, 1))) {
-                        blackCanCastleLeft = false;
-                    }
-                    if (startPosition.equals(new ChessPosition(8, 8))) {
-                        blackCanCastleRight = false;
-                    }
-                }
+    /**
+     * Gets the number of moves since the last capture or pawn move, counted
+     * per team, as used by the fifty-move rule
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
 
-            }
-        }
+    /**
+     * Gets the number of the current full move, starting at 1 and increased
+     * after each black move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
     }
 
-    private void castleWhite(ChessPosition startPosition, Collection<ChessMove> moves, ChessPiece piece) {
-        if (whiteCanCastleLeft) {
-            if (board.getPiece(new ChessPosition(1, 1)) != null
-                    && board.getPiece(new ChessPosition(1, 1)).getTeamColor().equals(TeamColor.WHITE)
-                    && board.getPiece(new ChessPosition(1, 2)) == null
-                    && board.getPiece(new ChessPosition(1, 3)) == null
-                    && board.getPiece(new ChessPosition(1, 4)) == null) {
-                if (moves.contains(new ChessMove(startPosition, new ChessPosition(1, 4), null))) {
-                    var newBoard = board.clone();
-                    var move = new ChessMove(startPosition, new ChessPosition(1, 3), null);
-                    movePieceOnBoard(newBoard, move);
-                    if (!inCheckHelper(newBoard, piece.getTeamColor())) {
-                        moves.add(move);
-                    }
+    /**
+     * Gets how many plies have been played, worked out from the fullmove
+     * number and the team to move, so it counts from the start of the game
+     * even for a game loaded from a FEN
+     */
+    public int getPly() {
+        return (fullmoveNumber - 1) * 2 + (currentPlayer == TeamColor.BLACK ? 1 : 0);
+    }
+
+    /**
+     * Gets the moves made with makeMove since the game was created or loaded,
+     * oldest first, as packed moves without flags (see PackedMove). The last
+     * one was played at ply getPly() - 1.
+     */
+    public int[] getRecentMoves() {
+        return Arrays.copyOf(moveLog, moveLogSize);
+    }
+
+    /**
+     * Builds a game from a FEN string. The halfmove clock and fullmove number
+     * may be left off, in which case they default to 0 and 1.
+     *
+     * @param fen the position in Forsyth-Edwards Notation
+     * @return the game in that position
+     * @throws RuntimeException if the string is not a valid FEN
+     */
+    public static ChessGame fromFen(String fen) {
+        var fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new RuntimeException("Invalid FEN: " + fen);
+        }
+        var game = new ChessGame(parsePlacement(fields[0], fen));
+        game.setKingsPosition(game.board);
+
+        game.currentPlayer = switch (fields[1]) {
+            case "w" -> TeamColor.WHITE;
+            case "b" -> TeamColor.BLACK;
+            default -> throw new RuntimeException("Invalid FEN: " + fen);
+        };
+
+        game.whiteCanCastleRight = false;
+        game.whiteCanCastleLeft = false;
+        game.blackCanCastleRight = false;
+        game.blackCanCastleLeft = false;
+        if (!fields[2].equals("-")) {
+            for (int i = 0; i < fields[2].length(); i++) {
+                switch (fields[2].charAt(i)) {
+                    case 'K' -> game.whiteCanCastleRight = true;
+                    case 'Q' -> game.whiteCanCastleLeft = true;
+                    case 'k' -> game.blackCanCastleRight = true;
+                    case 'q' -> game.blackCanCastleLeft = true;
+                    default -> throw new RuntimeException("Invalid FEN: " + fen);
                 }
             }
         }
-        if (whiteCanCastleRight) {
-            if (board.getPiece(new ChessPosition(1, 8)) != null
-                    && board.getPiece(new ChessPosition(1, 8)).getTeamColor().equals(TeamColor.WHITE)
-                    && board.getPiece(new ChessPosition(1, 7)) == null
-                    && board.getPiece(new ChessPosition(1, 6)) == null) {
-                if (moves.contains(new ChessMove(startPosition, new ChessPosition(1, 6), null))) {
-                    var newBoard = board.clone();
-                    var move = new ChessMove(startPosition, new ChessPosition(1, 7), null);
-                    movePieceOnBoard(newBoard, move);
-                    if (!inCheckHelper(newBoard, piece.getTeamColor())) {
-                        moves.add(move);
-                    }
-                }
+
+        if (!fields[3].equals("-")) {
+            var target = new ChessPosition(fields[3]);
+            if (target.getRow() != 3 && target.getRow() != 6) {
+                throw new RuntimeException("Invalid FEN: " + fen);
             }
+            int pawnRow = (target.getRow() == 3) ? 4 : 5;
+            game.enPassantPosition = ChessPosition.of(pawnRow, target.getColumn());
+        }
+
+        try {
+            game.halfmoveClock = (fields.length > 4) ? Integer.parseInt(fields[4]) : 0;
+            game.fullmoveNumber = (fields.length > 5) ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid FEN: " + fen);
         }
+        if (game.halfmoveClock < 0 || game.fullmoveNumber < 1) {
+            throw new RuntimeException("Invalid FEN: " + fen);
+        }
+        return game;
     }
 
-    private void castleBlack(ChessPosition startPosition, Collection<ChessMove> moves, ChessPiece piece) {
-        if (blackCanCastleLeft) {
-            if (board.getPiece(new ChessPosition(8, 1)) != null
-                    && board.getPiece(new ChessPosition(8, 1)).getTeamColor().equals(TeamColor.BLACK)
-                    && board.getPiece(new ChessPosition(8, 2)) == null
-                    && board.getPiece(new ChessPosition(8, 3)) == null
-                    && board.getPiece(new ChessPosition(8, 4)) == null) {
-                if (moves.contains(new ChessMove(startPosition, new ChessPosition(8, 4), null))) {
-                    var newBoard = board.clone();
-                    var move = new ChessMove(startPosition, new ChessPosition(8, 3), null);
-                    movePieceOnBoard(newBoard, move);
-                    if (!inCheckHelper(newBoard, piece.getTeamColor())) {
-                        moves.add(move);
-                    }
-                }
+    /**
+     * Gets the game in a compact binary form, about 34 bytes for a game with
+     * all 32 pieces, for storing in a database:
+     * <ul>
+     * <li>a header of two bytes, BINARY_MAGIC and BINARY_VERSION</li>
+     * <li>the occupied squares as a bitboard (8 bytes, a1 in bit 0)</li>
+     * <li>a 4-bit code for the piece on each occupied square, from a1 up, two
+     * to a byte with the first in the high half: team ordinal * 6 + piece type
+     * ordinal + 1</li>
+     * <li>a flags byte: black to move (bit 0), the castling rights K, Q, k and
+     * q (bits 1-4) and game over (bit 5)</li>
+     * <li>the square of the pawn that can be taken en passant, or -1 (1 byte)</li>
+     * <li>the halfmove clock and fullmove number (2 bytes each)</li>
+     * <li>the number of positions in the repetition history (2 bytes) and
+     * their Zobrist keys (8 bytes each)</li>
+     * </ul>
+     * Numbers are big-endian.
+     *
+     * @return the encoded game
+     */
+    public byte[] toBytes() {
+        long occupied = board.getOccupancy();
+        int pieces = Long.bitCount(occupied);
+        var buffer = ByteBuffer.allocate(2 + 8 + (pieces + 1) / 2 + 1 + 1 + 2 + 2 + 2 + historySize * 8);
+        buffer.put(BINARY_MAGIC).put(BINARY_VERSION).putLong(occupied);
+        int pending = -1;
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            var piece = board.getPiece(Long.numberOfTrailingZeros(squares));
+            int code = piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal() + 1;
+            if (pending < 0) {
+                pending = code;
+            } else {
+                buffer.put((byte) (pending << 4 | code));
+                pending = -1;
             }
         }
-        if (blackCanCastleRight) {
-            if (board.getPiece(new ChessPosition(8, 8)) != null
-                    && board.getPiece(new ChessPosition(8, 8)).getTeamColor().equals(TeamColor.BLACK)
-                    && board.getPiece(new ChessPosition(8, 7)) == null
-                    && board.getPiece(new ChessPosition(8, 6)) == null) {
-                if (moves.contains(new ChessMove(startPosition, new ChessPosition(8, 6), null))) {
-                    var newBoard = board.clone();
-                    var move = new ChessMove(startPosition, new ChessPosition(8, 7), null);
-                    movePieceOnBoard(newBoard, move);
-                    if (!inCheckHelper(newBoard, piece.getTeamColor())) {
-                        moves.add(move);
-                    }
+        if (pending >= 0) {
+            buffer.put((byte) (pending << 4));
+        }
+
+        int flags = (currentPlayer == TeamColor.BLACK ? 1 : 0)
+                | (whiteCanCastleRight ? 1 << 1 : 0)
+                | (whiteCanCastleLeft ? 1 << 2 : 0)
+                | (blackCanCastleRight ? 1 << 3 : 0)
+                | (blackCanCastleLeft ? 1 << 4 : 0)
+                | (gameOver ? 1 << 5 : 0);
+        buffer.put((byte) flags);
+        buffer.put((byte) ((enPassantPosition == null) ? -1 : ChessBoard.squareIndex(enPassantPosition)));
+        buffer.putShort((short) Math.min(halfmoveClock, 0xFFFF));
+        buffer.putShort((short) Math.min(fullmoveNumber, 0xFFFF));
+        buffer.putShort((short) historySize);
+        for (int i = 0; i < historySize; i++) {
+            buffer.putLong(history[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a game written by toBytes
+     *
+     * @throws RuntimeException if the bytes are not a game in a known version
+     */
+    public static ChessGame fromBytes(byte[] bytes) {
+        try {
+            var buffer = ByteBuffer.wrap(bytes);
+            if (buffer.get() != BINARY_MAGIC || buffer.get() != BINARY_VERSION) {
+                throw new RuntimeException("Invalid game data: unknown format");
+            }
+            var board = new ChessBoard();
+            long occupied = buffer.getLong();
+            int index = 0;
+            int current = 0;
+            for (long squares = occupied; squares != 0; squares &= squares - 1) {
+                int code;
+                if ((index++ & 1) == 0) {
+                    current = buffer.get() & 0xFF;
+                    code = current >>> 4;
+                } else {
+                    code = current & 0xF;
                 }
+                if (code < 1 || code > 12) {
+                    throw new RuntimeException("Invalid game data: bad piece code " + code);
+                }
+                board.addPiece(Long.numberOfTrailingZeros(squares), ChessPiece.of(
+                        TeamColor.values()[(code - 1) / 6], ChessPiece.PieceType.values()[(code - 1) % 6]));
+            }
+
+            var game = new ChessGame(board);
+            game.setKingsPosition(board);
+            int flags = buffer.get();
+            game.currentPlayer = ((flags & 1) != 0) ? TeamColor.BLACK : TeamColor.WHITE;
+            game.whiteCanCastleRight = (flags & 1 << 1) != 0;
+            game.whiteCanCastleLeft = (flags & 1 << 2) != 0;
+            game.blackCanCastleRight = (flags & 1 << 3) != 0;
+            game.blackCanCastleLeft = (flags & 1 << 4) != 0;
+            game.gameOver = (flags & 1 << 5) != 0;
+            int enPassant = buffer.get();
+            if (enPassant >= 0) {
+                game.enPassantPosition = ChessBoard.positionOf(enPassant);
+            }
+            game.halfmoveClock = buffer.getShort() & 0xFFFF;
+            game.fullmoveNumber = Math.max(1, buffer.getShort() & 0xFFFF);
+            int historyCount = buffer.getShort() & 0xFFFF;
+            game.history = new long[Math.max(historyCount, 16)];
+            for (int i = 0; i < historyCount; i++) {
+                game.history[i] = buffer.getLong();
             }
+            game.historySize = historyCount;
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new RuntimeException("Invalid game data: too short");
         }
     }
 
-
-    private void castleMove(ChessPosition startPosition, Collection<ChessMove> moves) {
-        var piece = board.getPiece(startPosition);
-        if (piece == null) {return;}
-        var pieceColor = piece.getTeamColor();
-        if (piece.getPieceType() != ChessPiece.PieceType.KING) {
-            return;
+    private static ChessBoard parsePlacement(String placement, String fen) {
+        var board = new ChessBoard();
+        int row = 7;
+        int col = 0;
+        for (int i = 0; i < placement.length(); i++) {
+            char symbol = placement.charAt(i);
+            if (symbol == '/') {
+                if (col != 8 || row == 0) {
+                    throw new RuntimeException("Invalid FEN: " + fen);
+                }
+                row--;
+                col = 0;
+            } else if (symbol >= '1' && symbol <= '8') {
+                col += symbol - '0';
+            } else if (col < 8) {
+                board.addPiece(row * 8 + col, ChessPiece.fromSymbol(symbol));
+                col++;
+            } else {
+                throw new RuntimeException("Invalid FEN: " + fen);
+            }
+            if (col > 8) {
+                throw new RuntimeException("Invalid FEN: " + fen);
+            }
         }
-        if (isInCheck(pieceColor)) {return;}
-        if (pieceColor.equals(TeamColor.WHITE)) {
-            castleWhite(startPosition, moves, piece);
-        } else {
-            castleBlack(startPosition, moves, piece);
+        if (row != 0 || col != 8) {
+            throw new RuntimeException("Invalid FEN: " + fen);
         }
+        return board;
     }
 
-
-
-
+    /**
+     * Gets the position as a FEN string with all six fields: placement, team
+     * to move, castling rights, en passant target square, halfmove clock and
+     * fullmove number. The string is cached until the game changes, and the
+     * board keeps each rank's text so a move only rewrites the ranks it touched.
+     *
+     * @return the game in Forsyth-Edwards Notation
+     */
     public String toFen() {
-        StringBuilder finalString = new StringBuilder();
-        var board = this.board.getBoard();
-        for (int j = 7; j >= 0; j--) {
-            var array = board[j];
-            int i = 0;
-            for (ChessPiece piece : array) {
-                if (piece == null) {
-                    i += 1;
-                } else {
-                    if (i != 0) {
-                        finalString.append(String.valueOf(i));
-                    }
-                    finalString.append(piece.toFen());
-                    i = 0;
-                }
-            }
-            if (i != 0) {
-                finalString.append(String.valueOf(i));
-            }
-            finalString.append("/");
+        if (fen == null) {
+            fen = buildFen();
         }
-        finalString.deleteCharAt(finalString.length() - 1);
+        return fen;
+    }
 
-        switch (currentPlayer) {
-            case WHITE -> finalString.append(" w ");
-            case BLACK -> finalString.append(" b ");
+    private String buildFen() {
+        StringBuilder finalString = new StringBuilder(90);
+        for (int row = 7; row >= 0; row--) {
+            finalString.append(board.rankFen(row));
+            if (row != 0) {
+                finalString.append('/');
+            }
         }
 
+        finalString.append(currentPlayer == TeamColor.WHITE ? " w " : " b ");
+
+        int castleStart = finalString.length();
         if (whiteCanCastleRight) {
-            finalString.append("K");
+            finalString.append('K');
         }
         if (whiteCanCastleLeft) {
-            finalString.append("Q");
+            finalString.append('Q');
         }
         if (blackCanCastleRight) {
-            finalString.append("k");
+            finalString.append('k');
         }
         if (blackCanCastleLeft) {
-            finalString.append("q");
+            finalString.append('q');
+        }
+        if (finalString.length() == castleStart) {
+            finalString.append('-');
         }
 
-        finalString.append(" - 0 1");
+        finalString.append(' ');
+        if (enPassantPosition != null) {
+            finalString.append((char) ('a' + enPassantPosition.getColumn() - 1));
+            finalString.append(enPassantPosition.getRow() == 4 ? '3' : '6');
+        } else {
+            finalString.append('-');
+        }
 
-    return finalString.toString();
+        finalString.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return finalString.toString();
     }
-
-
 }
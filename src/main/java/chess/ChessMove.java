@@ -16,6 +16,13 @@ public class ChessMove implements Cloneable {
     private final ChessPosition endPosition;
     private final ChessPiece.PieceType promotionPiece;
 
+    /*
+     * Shared instances indexed by from square, to square and promotion (none,
+     * queen, bishop, knight, rook). Filled on first use; moves are immutable, so
+     * two threads racing to fill a slot is harmless.
+     */
+    private static final ChessMove[] MOVES = new ChessMove[64 * 64 * 5];
+
 
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
@@ -24,6 +31,53 @@ public class ChessMove implements Cloneable {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Gets the shared instance of a move rather than allocating a new one
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        if (!onBoard(startPosition) || !onBoard(endPosition)) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        return of(ChessBoard.squareIndex(startPosition), ChessBoard.squareIndex(endPosition), promotionPiece);
+    }
+
+    /**
+     * Gets the shared instance of a move between square indexes (0 for a1
+     * through 63 for h8)
+     */
+    static ChessMove of(int start, int end, ChessPiece.PieceType promotionPiece) {
+        int promotion = promotionIndex(promotionPiece);
+        if (promotion < 0) {
+            return new ChessMove(ChessPosition.ofSquare(start), ChessPosition.ofSquare(end), promotionPiece);
+        }
+        int index = (start * 64 + end) * 5 + promotion;
+        var move = MOVES[index];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.ofSquare(start), ChessPosition.ofSquare(end), promotionPiece);
+            MOVES[index] = move;
+        }
+        return move;
+    }
+
+    private static boolean onBoard(ChessPosition position) {
+        return position.getRow() >= 1 && position.getRow() <= 8
+                && position.getColumn() >= 1 && position.getColumn() <= 8;
+    }
+
+    private static int promotionIndex(ChessPiece.PieceType promotionPiece) {
+        if (promotionPiece == null) {
+            return 0;
+        }
+        return switch (promotionPiece) {
+            case QUEEN -> 1;
+            case BISHOP -> 2;
+            case KNIGHT -> 3;
+            case ROOK -> 4;
+            default -> -1;
+        };
+    }
+
     public ChessMove(String move) {
         String[] words = move.split(" ");
         if (words.length == 2) {
@@ -14,11 +14,46 @@ public class ChessPiece {
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
 
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+
+    static {
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     public ChessPiece(ChessGame.TeamColor pieceColor, PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * Gets the shared instance of a piece rather than allocating a new one
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, PieceType type) {
+        return PIECES[pieceColor.ordinal()][type.ordinal()];
+    }
+
+    /**
+     * Gets the shared instance of the piece with the given FEN symbol, upper case
+     * for white and lower case for black
+     */
+    public static ChessPiece fromSymbol(char symbol) {
+        var color = Character.isUpperCase(symbol) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        var type = switch (Character.toLowerCase(symbol)) {
+            case 'k' -> PieceType.KING;
+            case 'q' -> PieceType.QUEEN;
+            case 'b' -> PieceType.BISHOP;
+            case 'n' -> PieceType.KNIGHT;
+            case 'r' -> PieceType.ROOK;
+            case 'p' -> PieceType.PAWN;
+            default -> throw new RuntimeException("Invalid piece symbol: " + symbol);
+        };
+        return of(color, type);
+    }
+
     public ChessPiece(String piece) {
         switch (piece) {
             case "K" -> {
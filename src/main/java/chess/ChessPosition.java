@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -13,6 +11,14 @@ public class ChessPosition {
     private final int row;
     private final int col;
 
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
     @Override
     public String toString() {
         return switch (col) {
@@ -39,7 +45,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * (31 + row) + col;
     }
 
     public ChessPosition(int row, int col) {
@@ -47,6 +53,26 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Gets the shared instance for a square rather than allocating a new one.
+     * Positions off the board are still created fresh.
+     *
+     * @return the position at row, col
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[(row - 1) * 8 + col - 1];
+    }
+
+    /**
+     * @return the shared instance for a square index (0 for a1 through 63 for h8)
+     */
+    static ChessPosition ofSquare(int square) {
+        return SQUARES[square];
+    }
+
     public ChessPosition(String pos) {
         if (pos.length() != 2) {
             throw new RuntimeException("Invalid postion: " + pos);
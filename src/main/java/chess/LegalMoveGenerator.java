@@ -0,0 +1,231 @@
+package chess;
+
+import static chess.ChessPiece.PieceType.*;
+
+/**
+ * Generates only the legal moves for one team. Checking pieces and pinned
+ * pieces are worked out once up front: in double check only the king moves,
+ * in single check other pieces may only capture the checker or block, and a
+ * pinned piece may only move along its pin ray.
+ * <p>
+ * Moves are written as packed ints (see PackedMove) into a MoveList. One
+ * generator belongs to one game and is reused for every call.
+ */
+class LegalMoveGenerator {
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {QUEEN, BISHOP, KNIGHT, ROOK};
+
+    private final ChessGame game;
+    private ChessBoard board;
+    private ChessGame.TeamColor color;
+    private ChessGame.TeamColor enemyColor;
+    private MoveList moves;
+    private boolean firstOnly;
+    private int sizeBefore;
+
+    private long own;
+    private long occupied;
+    private long pinned;
+    private final long[] pinRays = new long[64];
+
+    LegalMoveGenerator(ChessGame game) {
+        this.game = game;
+    }
+
+    /**
+     * Adds the legal moves of the team's pieces standing on fromSquares
+     *
+     * @param fromSquares bitboard of the pieces to generate moves for
+     * @param moves       where generated moves are added
+     * @param firstOnly   stop as soon as one legal move has been found
+     */
+    void generate(ChessGame.TeamColor color, long fromSquares, MoveList moves, boolean firstOnly) {
+        this.board = game.getBoard();
+        this.color = color;
+        this.enemyColor = (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        this.moves = moves;
+        this.firstOnly = firstOnly;
+        this.sizeBefore = moves.size();
+        generate(fromSquares);
+    }
+
+    private void generate(long fromSquares) {
+        own = board.getOccupancy(color);
+        occupied = board.getOccupancy();
+        pinned = 0L;
+        long targetMask = ~0L;
+
+        long kings = board.getBitboard(color, KING);
+        if (kings != 0) {
+            int kingSquare = Long.numberOfTrailingZeros(kings);
+            long checkers = board.attackersOf(kingSquare, enemyColor, occupied);
+            findPins(kingSquare);
+            if ((fromSquares & kings) != 0) {
+                kingMoves(kingSquare, checkers == 0);
+                if (done()) {
+                    return;
+                }
+            }
+            if (Long.bitCount(checkers) > 1) {
+                return;
+            }
+            if (checkers != 0) {
+                int checker = Long.numberOfTrailingZeros(checkers);
+                targetMask = checkers | MoveTables.between(kingSquare, checker);
+            }
+        }
+
+        long pieces = fromSquares & own & ~kings;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long allowed = targetMask;
+            if ((pinned & (1L << from)) != 0) {
+                allowed &= pinRays[from];
+            }
+            var type = board.getPiece(from).getPieceType();
+            long targets = switch (type) {
+                case KNIGHT -> MoveTables.knight(from);
+                case BISHOP -> MoveTables.bishop(from, occupied);
+                case ROOK -> MoveTables.rook(from, occupied);
+                case QUEEN -> MoveTables.rook(from, occupied) | MoveTables.bishop(from, occupied);
+                default -> 0L;
+            };
+            if (type == PAWN) {
+                pawnMoves(from, allowed);
+                enPassant(from);
+            } else {
+                addMoves(from, targets & ~own & allowed);
+            }
+            if (done()) {
+                return;
+            }
+        }
+    }
+
+    private boolean done() {
+        return firstOnly && moves.size() > sizeBefore;
+    }
+
+    private void kingMoves(int kingSquare, boolean notInCheck) {
+        long withoutKing = occupied & ~(1L << kingSquare);
+        long targets = MoveTables.king(kingSquare) & ~own;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (board.attackersOf(to, enemyColor, withoutKing) == 0) {
+                add(kingSquare, to, null, captureFlag(to));
+            }
+        }
+        if (notInCheck) {
+            castle(kingSquare, true);
+            castle(kingSquare, false);
+        }
+    }
+
+    private void castle(int kingSquare, boolean kingSide) {
+        int homeRow = (color == ChessGame.TeamColor.WHITE) ? 0 : 7;
+        if (kingSquare != homeRow * 8 + 4 || !game.canCastle(color, kingSide)) {
+            return;
+        }
+        int rookSquare = homeRow * 8 + (kingSide ? 7 : 0);
+        var rook = board.getPiece(rookSquare);
+        if (rook == null || rook.getTeamColor() != color) {
+            return;
+        }
+        long path = MoveTables.between(kingSquare, rookSquare);
+        if ((occupied & path) != 0) {
+            return;
+        }
+        int step = kingSide ? 1 : -1;
+        if (board.attackersOf(kingSquare + step, enemyColor, occupied) == 0
+                && board.attackersOf(kingSquare + 2 * step, enemyColor, occupied) == 0) {
+            add(kingSquare, kingSquare + 2 * step, null, PackedMove.CASTLE);
+        }
+    }
+
+    private void pawnMoves(int from, long allowed) {
+        int forward = (color == ChessGame.TeamColor.WHITE) ? 8 : -8;
+        int startRow = (color == ChessGame.TeamColor.WHITE) ? 1 : 6;
+        long targets = 0L;
+        int one = from + forward;
+        if (one >= 0 && one < 64 && (occupied & (1L << one)) == 0) {
+            targets |= 1L << one;
+            int two = one + forward;
+            if ((from >>> 3) == startRow && (occupied & (1L << two)) == 0 && (allowed & (1L << two)) != 0) {
+                add(from, two, null, PackedMove.DOUBLE_PUSH);
+            }
+        }
+        targets |= MoveTables.pawnAttacks(from, color) & board.getOccupancy(enemyColor);
+        addMoves(from, targets & allowed);
+    }
+
+    /*
+     * En passant removes two pieces from the same rank, which can expose the king
+     * in ways the pin rays do not describe, so it is checked by playing it out.
+     */
+    private void enPassant(int from) {
+        var jumped = game.getEnPassantPosition();
+        if (jumped == null) {
+            return;
+        }
+        int jumpedSquare = ChessBoard.squareIndex(jumped);
+        var jumpedPawn = board.getPiece(jumpedSquare);
+        if (jumpedPawn == null || jumpedPawn.getTeamColor() != enemyColor
+                || jumpedPawn.getPieceType() != PAWN || (from >>> 3) != (jumpedSquare >>> 3)
+                || Math.abs((from & 7) - (jumpedSquare & 7)) != 1) {
+            return;
+        }
+        int to = jumpedSquare + ((color == ChessGame.TeamColor.WHITE) ? 8 : -8);
+        int move = PackedMove.encode(from, to, null, PackedMove.CAPTURE | PackedMove.EN_PASSANT);
+        if (game.leavesKingSafe(move, color)) {
+            moves.add(move);
+        }
+    }
+
+    private void addMoves(int from, long targets) {
+        boolean promotes = board.getPiece(from).getPieceType() == PAWN;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int row = to >>> 3;
+            int flags = captureFlag(to);
+            if (promotes && (row == 0 || row == 7)) {
+                for (var promotion : PROMOTIONS) {
+                    add(from, to, promotion, flags);
+                }
+            } else {
+                add(from, to, null, flags);
+            }
+        }
+    }
+
+    private int captureFlag(int to) {
+        return ((occupied & (1L << to)) != 0) ? PackedMove.CAPTURE : 0;
+    }
+
+    private void add(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        moves.add(PackedMove.encode(from, to, promotion, flags));
+    }
+
+    /*
+     * An enemy slider that would see the king on an empty board, with exactly
+     * one piece in between and that piece our own, pins it: the piece may only
+     * move between the king and the pinner (capturing it included).
+     */
+    private void findPins(int kingSquare) {
+        long enemyQueens = board.getBitboard(enemyColor, QUEEN);
+        long snipers = (MoveTables.rookRays(kingSquare) & (board.getBitboard(enemyColor, ROOK) | enemyQueens))
+                | (MoveTables.bishopRays(kingSquare) & (board.getBitboard(enemyColor, BISHOP) | enemyQueens));
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long line = MoveTables.between(kingSquare, sniper);
+            long blockers = line & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & own) != 0) {
+                pinned |= blockers;
+                pinRays[Long.numberOfTrailingZeros(blockers)] = line | (1L << sniper);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of packed moves (see PackedMove) backed by an int array.
+ * Clearing keeps the array, so one list can be reused for every generation
+ * call without allocating.
+ */
+public class MoveList {
+
+    private int[] moves;
+    private int size = 0;
+
+    public MoveList() {
+        this(64);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return moves[index];
+    }
+
+    /**
+     * Overwrites a move in place, used to reorder a list while searching
+     */
+    public void set(int index, int move) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return True if the list holds the move, ignoring flags
+     */
+    public boolean contains(int move) {
+        int wanted = PackedMove.withoutFlags(move);
+        for (int i = 0; i < size; i++) {
+            if (PackedMove.withoutFlags(moves[i]) == wanted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<ChessMove> toChessMoves() {
+        var list = new ArrayList<ChessMove>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(PackedMove.toChessMove(moves[i]));
+        }
+        return list;
+    }
+}
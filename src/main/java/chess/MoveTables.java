@@ -0,0 +1,127 @@
+package chess;
+
+/**
+ * Per-square lookup tables for move generation, all as bitboards (bit n set
+ * for square n, a1 = 0 through h8 = 63). Knight, king and pawn targets are
+ * read straight from the tables; sliding pieces read a ray per direction and
+ * cut it off at the first blocker.
+ */
+final class MoveTables {
+
+    private static final int[][] KNIGHT_OFFSETS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_OFFSETS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    /*
+     * The first four directions run towards higher square numbers, so their
+     * nearest blocker is the lowest set bit; the last four run the other way.
+     */
+    private static final int[][] DIRECTIONS = {
+            {1, 0}, {0, 1}, {1, 1}, {1, -1},
+            {-1, 0}, {0, -1}, {-1, -1}, {-1, 1},
+    };
+    private static final int[] ROOK_DIRECTIONS = {0, 1, 4, 5};
+    private static final int[] BISHOP_DIRECTIONS = {2, 3, 6, 7};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[][] BETWEEN = new long[64][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int col = square & 7;
+            KNIGHT[square] = jumps(row, col, KNIGHT_OFFSETS);
+            KING[square] = jumps(row, col, KING_OFFSETS);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][square] = bit(row + 1, col - 1) | bit(row + 1, col + 1);
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][square] = bit(row - 1, col - 1) | bit(row - 1, col + 1);
+            for (int direction = 0; direction < 8; direction++) {
+                long ray = 0L;
+                int y = row + DIRECTIONS[direction][0];
+                int x = col + DIRECTIONS[direction][1];
+                while (y >= 0 && y < 8 && x >= 0 && x < 8) {
+                    int target = y * 8 + x;
+                    BETWEEN[square][target] = ray;
+                    ray |= 1L << target;
+                    y += DIRECTIONS[direction][0];
+                    x += DIRECTIONS[direction][1];
+                }
+                RAYS[direction][square] = ray;
+            }
+        }
+    }
+
+    private MoveTables() {
+    }
+
+    static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * @return the squares a pawn of the given team standing on square attacks
+     */
+    static long pawnAttacks(int square, ChessGame.TeamColor color) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    static long rook(int square, long occupied) {
+        return slide(square, occupied, ROOK_DIRECTIONS);
+    }
+
+    static long bishop(int square, long occupied) {
+        return slide(square, occupied, BISHOP_DIRECTIONS);
+    }
+
+    /**
+     * @return the squares a rook or bishop would reach on an empty board
+     */
+    static long rookRays(int square) {
+        return RAYS[0][square] | RAYS[1][square] | RAYS[4][square] | RAYS[5][square];
+    }
+
+    static long bishopRays(int square) {
+        return RAYS[2][square] | RAYS[3][square] | RAYS[6][square] | RAYS[7][square];
+    }
+
+    /**
+     * @return the squares strictly between two squares on the same rank, file
+     * or diagonal, or nothing if they are not aligned
+     */
+    static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    private static long slide(int square, long occupied, int[] directions) {
+        long targets = 0L;
+        for (int direction : directions) {
+            long ray = RAYS[direction][square];
+            long blockers = ray & occupied;
+            if (blockers != 0) {
+                int blocker = (direction < 4)
+                        ? Long.numberOfTrailingZeros(blockers)
+                        : 63 - Long.numberOfLeadingZeros(blockers);
+                ray ^= RAYS[direction][blocker];
+            }
+            targets |= ray;
+        }
+        return targets;
+    }
+
+    private static long jumps(int row, int col, int[][] offsets) {
+        long targets = 0L;
+        for (var offset : offsets) {
+            targets |= bit(row + offset[0], col + offset[1]);
+        }
+        return targets;
+    }
+
+    private static long bit(int row, int col) {
+        return (row >= 0 && row < 8 && col >= 0 && col < 8) ? 1L << (row * 8 + col) : 0L;
+    }
+}
@@ -0,0 +1,24 @@
+package chess;
+
+/**
+ * Everything ChessGame.applyMove changes that cannot be worked out from the
+ * move itself, so ChessGame.undoMove can put the game back exactly.
+ * <p>
+ * Entries live in a stack owned by the game and are reused between moves.
+ */
+class MoveUndo {
+    int move;
+    ChessPiece movedPiece;
+    ChessPiece capturedPiece;
+    int capturedSquare;
+    ChessPosition enPassantPosition;
+    boolean whiteCanCastleRight;
+    boolean blackCanCastleRight;
+    boolean whiteCanCastleLeft;
+    boolean blackCanCastleLeft;
+    ChessPosition whiteKing;
+    ChessPosition blackKing;
+    ChessGame.TeamColor currentPlayer;
+    ChessGame.GameStatus status;
+    int halfmoveClock;
+}
@@ -0,0 +1,144 @@
+package chess;
+
+import java.util.Base64;
+
+/**
+ * Packs a move into an int so move lists can be plain int arrays.
+ * <p>
+ * Bits 0-5 hold the start square and bits 6-11 the end square (0 for a1
+ * through 63 for h8), bits 12-14 the promotion piece (0 none, 1 queen,
+ * 2 bishop, 3 knight, 4 rook) and the bits above that the flags. The flags
+ * are filled in by the move generator; a move converted from a ChessMove has
+ * none, and applying it works them out from the board.
+ */
+public final class PackedMove {
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int EN_PASSANT = 1 << 16;
+    public static final int CASTLE = 1 << 17;
+    public static final int DOUBLE_PUSH = 1 << 18;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            null, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK,
+    };
+
+    private static final String PROMOTION_SYMBOLS = " qbnr";
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        return from | (to << 6) | (promotionIndex(promotion) << 12) | flags;
+    }
+
+    public static int encode(ChessMove move) {
+        return encode(ChessBoard.squareIndex(move.getStartPosition()),
+                ChessBoard.squareIndex(move.getEndPosition()), move.getPromotionPiece(), 0);
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(from(move), to(move), promotion(move));
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static ChessPiece.PieceType promotion(int move) {
+        return PROMOTIONS[(move >>> 12) & 0x7];
+    }
+
+    /**
+     * @return the move without its flags, so moves from different sources can
+     * be compared
+     */
+    public static int withoutFlags(int move) {
+        return move & 0x7FFF;
+    }
+
+    public static boolean is(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    /**
+     * @return the move in coordinate notation, such as e2e4 or e7e8q
+     */
+    public static String toUci(int move) {
+        var text = new StringBuilder(5);
+        text.append(squareName(from(move))).append(squareName(to(move)));
+        int promotion = (move >>> 12) & 0x7;
+        if (promotion != 0) {
+            text.append(PROMOTION_SYMBOLS.charAt(promotion));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads a move in coordinate notation, such as e2e4 or e7e8q
+     *
+     * @return the move without flags
+     */
+    public static int fromUci(String move) {
+        if (move.length() < 4 || move.length() > 5) {
+            throw new RuntimeException("Not a valid move: " + move);
+        }
+        int from = ChessBoard.squareIndex(new ChessPosition(move.substring(0, 2)));
+        int to = ChessBoard.squareIndex(new ChessPosition(move.substring(2, 4)));
+        ChessPiece.PieceType promotion = null;
+        if (move.length() == 5) {
+            promotion = ChessPiece.fromSymbol(move.charAt(4)).getPieceType();
+        }
+        return encode(from, to, promotion, 0);
+    }
+
+    /**
+     * Packs a whole move list into one short string for sending to clients:
+     * each move without its flags as two big-endian bytes, base64 encoded.
+     * Forty legal moves come to 108 characters.
+     */
+    public static String pack(MoveList moves) {
+        var bytes = new byte[moves.size() * 2];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = withoutFlags(moves.get(i));
+            bytes[2 * i] = (byte) (move >>> 8);
+            bytes[2 * i + 1] = (byte) move;
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Reads a string written by pack
+     *
+     * @return the moves, without flags
+     */
+    public static MoveList unpack(String packed) {
+        var bytes = Base64.getDecoder().decode(packed);
+        var moves = new MoveList(bytes.length / 2);
+        for (int i = 0; i + 1 < bytes.length; i += 2) {
+            moves.add(((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF));
+        }
+        return moves;
+    }
+
+    private static String squareName(int square) {
+        return String.valueOf((char) ('a' + (square & 7))) + (char) ('1' + (square >>> 3));
+    }
+
+    private static int promotionIndex(ChessPiece.PieceType promotion) {
+        if (promotion == null) {
+            return 0;
+        }
+        return switch (promotion) {
+            case QUEEN -> 1;
+            case BISHOP -> 2;
+            case KNIGHT -> 3;
+            case ROOK -> 4;
+            default -> throw new RuntimeException("Invalid promotion piece: " + promotion);
+        };
+    }
+}
@@ -41,25 +41,19 @@ public class PieceMovesCalculator {
         return moves;
     }
 
-    private boolean addSpace(Collection<ChessMove> moves, int y, int x) {
-        if (x > 8 || x < 1 || y < 1 || y >8) {return false;}
-        var position = new ChessPosition(y, x);
-        if (board.getPiece(position) == null) {
-            moves.add(new ChessMove(this.myPosition, position, null));
-            return true;
-        } else {
-            if (board.getPiece(position).getTeamColor().equals(pieceColor)) {
-                return false;
-            } else {
-                moves.add(new ChessMove(this.myPosition, position, null));
-                return false;
-            }
+    private void addTargets(Collection<ChessMove> moves, long targets) {
+        int square = ChessBoard.squareIndex(myPosition);
+        targets &= ~board.getOccupancy(pieceColor);
+        while (targets != 0) {
+            int target = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(ChessMove.of(square, target, null));
         }
     }
 
     private boolean addPawnSpace(Collection<ChessMove> moves, int y, int x, boolean forward) {
         if (x > 8 || x < 1 || y < 1 || y > 8) {return false;}
-        var position = new ChessPosition(y, x);
+        var position = ChessPosition.of(y, x);
         if (forward) {
             if (board.getPiece(position) == null) {
                 promotePawn(moves, position);
@@ -84,83 +78,31 @@ public class PieceMovesCalculator {
                 && myPosition.getRow() == 2)) {
             for (var piece : ChessPiece.PieceType.values()) {
                 if (piece != ChessPiece.PieceType.KING && piece != ChessPiece.PieceType.PAWN) {
-                    moves.add(new ChessMove(this.myPosition, position, piece));
+                    moves.add(ChessMove.of(this.myPosition, position, piece));
                 }
             }
         } else {
-            moves.add(new ChessMove(this.myPosition, position, null));
+            moves.add(ChessMove.of(this.myPosition, position, null));
         }
     }
 
     private Collection<ChessMove> rookMove(Collection<ChessMove> moves) {
-        for (int y = myPosition.getRow()-1; y > 0; y--) {
-            if (!addSpace(moves, y, this.myPosition.getColumn())) {
-                break;
-            }
-        }
-        for (int y = myPosition.getRow()+1; y <= 8; y++) {
-            if (!addSpace(moves, y, this.myPosition.getColumn())) {
-                break;
-            }
-        }
-        for (int x = myPosition.getColumn()+1; x <= 8; x++) {
-            if (!addSpace(moves, this.myPosition.getRow(), x)) {
-                break;
-            }
-        }
-        for (int x = myPosition.getColumn()-1; x > 0; x--) {
-            if (!addSpace(moves, this.myPosition.getRow(), x)) {
-                break;
-            }
-        }
+        addTargets(moves, MoveTables.rook(ChessBoard.squareIndex(myPosition), board.getOccupancy()));
         return moves;
     }
 
     private Collection<ChessMove> kingMove(Collection<ChessMove> moves) {
-        for (int y = myPosition.getRow()-1; y <= myPosition.getRow()+1; y++) {
-            for (int x = myPosition.getColumn() - 1; x <= myPosition.getColumn() + 1; x++) {
-                if (!addSpace(moves, y, x)) {
-                }
-            }
-        }
+        addTargets(moves, MoveTables.king(ChessBoard.squareIndex(myPosition)));
         return moves;
     }
 
     private Collection<ChessMove> bishopMove(Collection<ChessMove> moves) {
-        for (int i = 1; i <= 8; i++) {
-            if (!addSpace(moves, myPosition.getRow()+i, myPosition.getColumn()-i)) {
-                break;
-            }
-        }
-        for (int i = 1; i <= 8; i++) {
-            if (!addSpace(moves, myPosition.getRow()+i, myPosition.getColumn()+i)) {
-                break;
-            }
-        }
-        for (int i = 1; i <= 8; i++) {
-            if (!addSpace(moves, myPosition.getRow()-i, myPosition.getColumn()-i)) {
-                break;
-            }
-        }
-        for (int i = 1; i <= 8; i++) {
-            if (!addSpace(moves, myPosition.getRow()-i, myPosition.getColumn()+i)) {
-                break;
-            }
-        }
+        addTargets(moves, MoveTables.bishop(ChessBoard.squareIndex(myPosition), board.getOccupancy()));
         return moves;
     }
 
     private Collection<ChessMove> knightMove(Collection<ChessMove> moves) {
-        for (int y = -2; y <= 2; y+=4) {
-            for (int x = -1; x <= 1; x+=2) {
-                addSpace(moves, y+myPosition.getRow(), x+myPosition.getColumn());
-            }
-        }
-        for (int x = -2; x <= 2; x+=4) {
-            for (int y = -1; y <= 1; y+=2) {
-                addSpace(moves, y+myPosition.getRow(), x+myPosition.getColumn());
-            }
-        }
+        addTargets(moves, MoveTables.knight(ChessBoard.squareIndex(myPosition)));
         return moves;
     }
 
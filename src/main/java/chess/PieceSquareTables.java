@@ -0,0 +1,125 @@
+package chess;
+
+/**
+ * Material and piece-square values in centipawns, the static evaluation kept
+ * up to date by ChessBoard.addPiece. Each piece is worth its material value
+ * plus a bonus for the square it stands on.
+ */
+public final class PieceSquareTables {
+
+    /**
+     * Piece values in centipawns, indexed by PieceType ordinal
+     * (king, queen, bishop, knight, rook, pawn)
+     */
+    private static final int[] VALUES = {0, 900, 330, 320, 500, 100};
+
+    /*
+     * Tables written from White's side with rank 8 on the first line, indexed
+     * by PieceType ordinal. White reads square (7 - row) * 8 + col, Black reads
+     * the mirrored square row * 8 + col.
+     */
+    private static final int[][] TABLES = {
+            {
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -20, -30, -30, -40, -40, -30, -30, -20,
+                    -10, -20, -20, -20, -20, -20, -20, -10,
+                    20, 20, 0, 0, 0, 0, 20, 20,
+                    20, 30, 10, 0, 0, 10, 30, 20,
+            },
+            {
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 5, 5, 5, 0, -10,
+                    -5, 0, 5, 5, 5, 5, 0, -5,
+                    0, 0, 5, 5, 5, 5, 0, -5,
+                    -10, 5, 5, 5, 5, 5, 0, -10,
+                    -10, 0, 5, 0, 0, 0, 0, -10,
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+            },
+            {
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 10, 10, 5, 0, -10,
+                    -10, 5, 5, 10, 10, 5, 5, -10,
+                    -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10,
+                    -10, 5, 0, 0, 0, 0, 5, -10,
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+            },
+            {
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+                    -40, -20, 0, 0, 0, 0, -20, -40,
+                    -30, 0, 10, 15, 15, 10, 0, -30,
+                    -30, 5, 15, 20, 20, 15, 5, -30,
+                    -30, 0, 15, 20, 20, 15, 0, -30,
+                    -30, 5, 10, 15, 15, 10, 5, -30,
+                    -40, -20, 0, 5, 5, 0, -20, -40,
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+            },
+            {
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    5, 10, 10, 10, 10, 10, 10, 5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    0, 0, 0, 5, 5, 0, 0, 0,
+            },
+            {
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5,
+                    0, 0, 0, 20, 20, 0, 0, 0,
+                    5, -5, -10, 0, 0, -10, -5, 5,
+                    5, 10, 10, -20, -20, 10, 10, 5,
+                    0, 0, 0, 0, 0, 0, 0, 0,
+            },
+    };
+
+    /*
+     * Signed score of every piece on every square, indexed by
+     * color * 6 + type like the board's bitboards: positive for White.
+     */
+    private static final int[][] SCORES = new int[12][64];
+
+    static {
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : ChessPiece.PieceType.values()) {
+                for (int square = 0; square < 64; square++) {
+                    int row = square >>> 3;
+                    int index = (color == ChessGame.TeamColor.WHITE) ? (7 - row) * 8 + (square & 7) : square;
+                    int value = VALUES[type.ordinal()] + TABLES[type.ordinal()][index];
+                    SCORES[color.ordinal() * 6 + type.ordinal()][square] =
+                            (color == ChessGame.TeamColor.WHITE) ? value : -value;
+                }
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    /**
+     * @return the material value of a piece type in centipawns
+     */
+    public static int pieceValue(ChessPiece.PieceType type) {
+        return VALUES[type.ordinal()];
+    }
+
+    /**
+     * @return the piece's value on the square, positive for White and
+     * negative for Black
+     */
+    public static int score(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return SCORES[color.ordinal() * 6 + type.ordinal()][square];
+    }
+
+    static int score(int bitboardIndex, int square) {
+        return SCORES[bitboardIndex][square];
+    }
+}
@@ -0,0 +1,65 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of positions. A position's key is the XOR
+ * of the keys of everything in it, so a move only has to XOR out what it
+ * removes and XOR in what it adds.
+ * <p>
+ * The keys come from a fixed seed so they are the same in every JVM, which
+ * lets keys be stored and compared across restarts.
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[4];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        var random = new SplittableRandom(0x5DEECE66DL);
+        for (var piece : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                piece[square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param piece  index of the piece, team * 6 + piece type
+     * @param square 0 for a1 through 63 for h8
+     */
+    static long piece(int piece, int square) {
+        return PIECES[piece][square];
+    }
+
+    /**
+     * @param right 0 white king side, 1 white queen side, 2 black king side,
+     *              3 black queen side
+     */
+    static long castling(int right) {
+        return CASTLING[right];
+    }
+
+    /**
+     * @param file 0 for the a file through 7 for the h file
+     */
+    static long enPassantFile(int file) {
+        return EN_PASSANT_FILE[file];
+    }
+
+    static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
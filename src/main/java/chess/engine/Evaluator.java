@@ -0,0 +1,36 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PieceSquareTables;
+
+/**
+ * Static evaluation: material plus a piece-square bonus for where each piece
+ * stands (see PieceSquareTables). The board keeps the total up to date as
+ * pieces move, so evaluating a position costs nothing. Scores are in
+ * centipawns from the point of view of the team to move.
+ */
+public final class Evaluator {
+
+    /**
+     * Piece values in centipawns, indexed by PieceType ordinal, for move
+     * ordering
+     */
+    static final int[] VALUES = new int[ChessPiece.PieceType.values().length];
+
+    static {
+        for (var type : ChessPiece.PieceType.values()) {
+            VALUES[type.ordinal()] = PieceSquareTables.pieceValue(type);
+        }
+    }
+
+    private Evaluator() {
+    }
+
+    /**
+     * @return the score of the position in centipawns for the team to move
+     */
+    public static int evaluate(ChessGame game) {
+        return game.getEvaluation();
+    }
+}
@@ -0,0 +1,190 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A read-only opening book in a memory-mapped file, so every room shares the
+ * same pages and opening one costs no heap.
+ * <p>
+ * The file is a 16 byte header (the magic "CBK1", a version int and the entry
+ * count as a long) followed by 16 byte entries sorted by key then move: the
+ * position's Zobrist key (long), the book move as a packed move without flags
+ * (int) and its weight (int). A lookup binary searches for the first entry
+ * with the key and reads forward. Books are written by OpeningBookBuilder.
+ */
+public class OpeningBook {
+
+    static final int MAGIC = 0x43424B31;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 16;
+
+    private static volatile OpeningBook shared;
+
+    private final ByteBuffer entries;
+    private final long count;
+
+    /**
+     * A move the book gives for a position, and how often it was played
+     */
+    public record BookMove(int move, int weight) {
+    }
+
+    private OpeningBook(ByteBuffer entries, long count) {
+        this.entries = entries;
+        this.count = count;
+    }
+
+    /**
+     * Maps a book file into memory
+     *
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long count = buffer.getLong(8);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || count < 0 || HEADER_BYTES + count * ENTRY_BYTES != size) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(buffer, count);
+        }
+    }
+
+    /**
+     * @return a book with no positions
+     */
+    public static OpeningBook empty() {
+        return new OpeningBook(ByteBuffer.allocate(0), 0);
+    }
+
+    /**
+     * Gets the book named by the chess.book system property, loaded on first
+     * use, or an empty book when the property is unset or the file cannot be
+     * read
+     */
+    public static OpeningBook shared() {
+        var book = shared;
+        if (book == null) {
+            synchronized (OpeningBook.class) {
+                book = shared;
+                if (book == null) {
+                    var path = System.getProperty("chess.book");
+                    book = empty();
+                    if (path != null && Files.isReadable(Path.of(path))) {
+                        try {
+                            book = open(Path.of(path));
+                        } catch (IOException e) {
+                            System.out.println("Opening book not loaded: " + e.getMessage());
+                        }
+                    }
+                    shared = book;
+                }
+            }
+        }
+        return book;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return every book move stored for the position's key, in file order
+     */
+    public List<BookMove> lookup(long key) {
+        var moves = new ArrayList<BookMove>();
+        for (long i = firstIndex(key); i < count && keyAt(i) == key; i++) {
+            int offset = offset(i);
+            moves.add(new BookMove(entries.getInt(offset + 8), entries.getInt(offset + 12)));
+        }
+        return moves;
+    }
+
+    /**
+     * Picks a book move for the game's position at random, weighted by how
+     * often each was played. Moves that are not legal in the position (a key
+     * collision) are skipped.
+     *
+     * @return the move as the game's move generator produces it, flags
+     * included, or SearchResult.NO_MOVE if the book has nothing
+     */
+    public int pick(ChessGame game, Random random) {
+        var candidates = lookup(game.getZobristKey());
+        if (candidates.isEmpty()) {
+            return SearchResult.NO_MOVE;
+        }
+        var legal = new MoveList();
+        game.legalMoves(legal);
+        long total = 0;
+        var moves = new int[candidates.size()];
+        var weights = new long[candidates.size()];
+        int found = 0;
+        for (var candidate : candidates) {
+            int move = find(legal, candidate.move());
+            if (move != SearchResult.NO_MOVE && candidate.weight() > 0) {
+                moves[found] = move;
+                total += candidate.weight();
+                weights[found++] = total;
+            }
+        }
+        if (found == 0) {
+            return SearchResult.NO_MOVE;
+        }
+        long roll = (long) (random.nextDouble() * total);
+        for (int i = 0; i < found; i++) {
+            if (roll < weights[i]) {
+                return moves[i];
+            }
+        }
+        return moves[found - 1];
+    }
+
+    private static int find(MoveList legal, int move) {
+        for (int i = 0; i < legal.size(); i++) {
+            if (PackedMove.withoutFlags(legal.get(i)) == move) {
+                return legal.get(i);
+            }
+        }
+        return SearchResult.NO_MOVE;
+    }
+
+    private long firstIndex(long key) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(long index) {
+        return entries.getLong(offset(index));
+    }
+
+    private static int offset(long index) {
+        return (int) (HEADER_BYTES + index * ENTRY_BYTES);
+    }
+}
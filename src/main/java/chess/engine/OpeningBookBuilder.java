@@ -0,0 +1,336 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.InvalidMoveException;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects opening lines and writes them as an OpeningBook file. Lines come
+ * from PGN games or from a FEN plus moves in coordinate notation; every move
+ * within the first maxPlies plies is counted once per line that plays it, and
+ * the count becomes the move's weight.
+ * <p>
+ * Run as a program to build a book file:
+ * <code>OpeningBookBuilder book.bin games.pgn lines.txt</code>. Files ending in
+ * .pgn are read as PGN; any other file has one line per row, either moves from
+ * the start position ("e2e4 e7e5 g1f3") or a FEN, a semicolon and the moves.
+ */
+public class OpeningBookBuilder {
+
+    private final int maxPlies;
+    private final Map<Long, Map<Integer, Integer>> counts = new HashMap<>();
+
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: OpeningBookBuilder <book file> <pgn or line files>...");
+            return;
+        }
+        var builder = new OpeningBookBuilder(Integer.getInteger("chess.book.plies", 24));
+        for (int i = 1; i < args.length; i++) {
+            try (var reader = Files.newBufferedReader(Path.of(args[i]))) {
+                if (args[i].endsWith(".pgn")) {
+                    builder.addPgn(reader);
+                } else {
+                    builder.addLines(reader);
+                }
+            }
+        }
+        builder.write(Path.of(args[0]));
+        System.out.println("Wrote " + builder.size() + " book moves to " + args[0]);
+    }
+
+    /**
+     * @return how many distinct position and move pairs have been collected
+     */
+    public int size() {
+        int size = 0;
+        for (var moves : counts.values()) {
+            size += moves.size();
+        }
+        return size;
+    }
+
+    /**
+     * Adds one line of moves in coordinate notation played from a position
+     *
+     * @param fen   the starting position, or null for the normal start
+     * @param moves the moves separated by spaces, such as "e2e4 e7e5"
+     * @throws RuntimeException if a move is not legal
+     */
+    public void addLine(String fen, String moves) {
+        var game = (fen == null) ? new ChessGame() : ChessGame.fromFen(fen);
+        var legal = new MoveList();
+        int ply = 0;
+        for (var text : moves.trim().split("\\s+")) {
+            if (text.isEmpty() || ply >= maxPlies || game.gameOver) {
+                break;
+            }
+            game.legalMoves(legal);
+            int move = PackedMove.fromUci(text);
+            if (!legal.contains(move)) {
+                throw new RuntimeException("Illegal move " + text + " in " + game.toFen());
+            }
+            add(game, move);
+            ply++;
+        }
+    }
+
+    /**
+     * Adds one line per row of the reader: moves from the start position, or
+     * a FEN, a semicolon and the moves. Blank rows and rows starting with #
+     * are skipped.
+     */
+    public void addLines(Reader reader) throws IOException {
+        var lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int split = line.indexOf(';');
+            if (split >= 0) {
+                addLine(line.substring(0, split), line.substring(split + 1));
+            } else {
+                addLine(null, line);
+            }
+        }
+    }
+
+    /**
+     * Adds the main line of every game in a PGN file. Comments, variations
+     * and annotations are skipped; a FEN tag sets the game's start position.
+     *
+     * @return the number of games read
+     * @throws RuntimeException if a game has an illegal or ambiguous move
+     */
+    public int addPgn(Reader reader) throws IOException {
+        var text = new StringBuilder();
+        var buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+        }
+
+        int games = 0;
+        ChessGame game = null;
+        String startFen = null;
+        int ply = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '[') {
+                int end = text.indexOf("]", i);
+                end = (end < 0) ? length : end;
+                var tag = text.substring(i + 1, end).trim();
+                if (tag.startsWith("FEN ")) {
+                    startFen = tag.substring(4).replace("\"", "").trim();
+                }
+                i = end + 1;
+            } else if (c == '{') {
+                int end = text.indexOf("}", i);
+                i = (end < 0) ? length : end + 1;
+            } else if (c == ';') {
+                int end = text.indexOf("\n", i);
+                i = (end < 0) ? length : end + 1;
+            } else if (c == '(') {
+                int depth = 0;
+                do {
+                    char next = text.charAt(i++);
+                    if (next == '(') {
+                        depth++;
+                    } else if (next == ')') {
+                        depth--;
+                    }
+                } while (depth > 0 && i < length);
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(text.charAt(end))
+                        && "{(;[".indexOf(text.charAt(end)) < 0) {
+                    end++;
+                }
+                var token = text.substring(i, end);
+                i = end;
+                if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                    if (game != null) {
+                        games++;
+                    }
+                    game = null;
+                    startFen = null;
+                    ply = 0;
+                    continue;
+                }
+                token = token.replaceFirst("^\\d+\\.+", "");
+                if (token.isEmpty() || token.startsWith("$")) {
+                    continue;
+                }
+                if (game == null) {
+                    game = (startFen == null) ? new ChessGame() : ChessGame.fromFen(startFen);
+                }
+                if (ply < maxPlies && !game.gameOver) {
+                    int move = fromSan(game, token);
+                    add(game, move);
+                    ply++;
+                }
+            }
+        }
+        if (game != null) {
+            games++;
+        }
+        return games;
+    }
+
+    /*
+     * Counts the move for the game's position, then plays it. The line is
+     * replayed with makeMove, like a real game, so a draw by repetition or
+     * the fifty-move rule ends it where the server would.
+     */
+    private void add(ChessGame game, int move) {
+        counts.computeIfAbsent(game.getZobristKey(), key -> new TreeMap<>())
+                .merge(PackedMove.withoutFlags(move), 1, Integer::sum);
+        try {
+            game.makeMove(PackedMove.toChessMove(move));
+        } catch (InvalidMoveException e) {
+            throw new RuntimeException("Illegal move " + PackedMove.toUci(move) + " in " + game.toFen());
+        }
+    }
+
+    /**
+     * Reads a move in standard algebraic notation, such as Nbd7, exd6, O-O or
+     * e8=Q+, for the game's current position
+     *
+     * @return the matching legal move
+     * @throws RuntimeException if no legal move, or more than one, matches
+     */
+    static int fromSan(ChessGame game, String san) {
+        var text = san.replaceAll("[+#!?]+$", "");
+        var legal = new MoveList();
+        game.legalMoves(legal);
+        var board = game.getBoard();
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            boolean kingSide = text.length() == 3;
+            for (int i = 0; i < legal.size(); i++) {
+                int move = legal.get(i);
+                if (PackedMove.is(move, PackedMove.CASTLE)
+                        && (PackedMove.to(move) > PackedMove.from(move)) == kingSide) {
+                    return move;
+                }
+            }
+            throw new RuntimeException("Illegal move " + san + " in " + game.toFen());
+        }
+
+        ChessPiece.PieceType promotion = null;
+        int equals = text.indexOf('=');
+        if (equals >= 0 && equals + 1 < text.length()) {
+            promotion = ChessPiece.fromSymbol(text.charAt(equals + 1)).getPieceType();
+            text = text.substring(0, equals);
+        } else if (text.length() > 2 && "QRBN".indexOf(text.charAt(text.length() - 1)) >= 0
+                && Character.isDigit(text.charAt(text.length() - 2))) {
+            promotion = ChessPiece.fromSymbol(text.charAt(text.length() - 1)).getPieceType();
+            text = text.substring(0, text.length() - 1);
+        }
+
+        var type = ChessPiece.PieceType.PAWN;
+        if (!text.isEmpty() && "KQRBN".indexOf(text.charAt(0)) >= 0) {
+            type = ChessPiece.fromSymbol(text.charAt(0)).getPieceType();
+            text = text.substring(1);
+        }
+        text = text.replace("x", "");
+        if (text.length() < 2) {
+            throw new RuntimeException("Not a valid move: " + san);
+        }
+        int to = square(text.substring(text.length() - 2), san);
+        var hint = text.substring(0, text.length() - 2);
+
+        int found = SearchResult.NO_MOVE;
+        for (int i = 0; i < legal.size(); i++) {
+            int move = legal.get(i);
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to || PackedMove.promotion(move) != promotion
+                    || board.getPiece(from).getPieceType() != type || !matchesHint(from, hint)) {
+                continue;
+            }
+            if (found != SearchResult.NO_MOVE) {
+                throw new RuntimeException("Ambiguous move " + san + " in " + game.toFen());
+            }
+            found = move;
+        }
+        if (found == SearchResult.NO_MOVE) {
+            throw new RuntimeException("Illegal move " + san + " in " + game.toFen());
+        }
+        return found;
+    }
+
+    private static boolean matchesHint(int from, String hint) {
+        for (int i = 0; i < hint.length(); i++) {
+            char c = hint.charAt(i);
+            if (c >= 'a' && c <= 'h' && (from & 7) != c - 'a') {
+                return false;
+            }
+            if (c >= '1' && c <= '8' && (from >>> 3) != c - '1') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int square(String name, String san) {
+        char file = name.charAt(0);
+        char rank = name.charAt(1);
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            throw new RuntimeException("Not a valid move: " + san);
+        }
+        return (rank - '1') * 8 + (file - 'a');
+    }
+
+    /**
+     * Writes the collected moves as a book file, replacing any existing file
+     */
+    public void write(Path path) throws IOException {
+        var keys = new long[counts.size()];
+        int k = 0;
+        for (long key : counts.keySet()) {
+            keys[k++] = key;
+        }
+        Arrays.sort(keys);
+
+        int entries = size();
+        var buffer = ByteBuffer.allocate(OpeningBook.HEADER_BYTES + entries * OpeningBook.ENTRY_BYTES);
+        buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(entries);
+        for (long key : keys) {
+            for (var move : counts.get(key).entrySet()) {
+                buffer.putLong(key).putInt(move.getKey()).putInt(move.getValue());
+            }
+        }
+        buffer.flip();
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
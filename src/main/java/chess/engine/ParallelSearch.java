@@ -0,0 +1,129 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Lazy SMP: several threads search the same position at once, each on its own
+ * copy of the game, sharing one TranspositionTable. The helpers' results are
+ * thrown away; what they contribute is the table entries they leave for the
+ * main thread, which runs on the caller's thread and decides the answer.
+ * <p>
+ * Helpers run on one pool of daemon threads shared by every request, sized to
+ * the machine, and each request is capped at MAX_THREADS threads.
+ */
+public final class ParallelSearch {
+
+    public static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService HELPERS = Executors.newFixedThreadPool(
+            Math.max(1, MAX_THREADS - 1), runnable -> {
+                var thread = new Thread(runnable, "chess-search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private ParallelSearch() {
+    }
+
+    /**
+     * Lets another thread stop a search, for instance when whoever asked for
+     * it has stopped waiting. Stopping before the search starts makes it
+     * return at once.
+     */
+    public static final class Handle {
+        private final List<Search> searches = new ArrayList<>();
+        private boolean stopped = false;
+
+        public synchronized void stop() {
+            stopped = true;
+            for (var search : searches) {
+                search.stop();
+            }
+        }
+
+        private synchronized void add(Search search) {
+            searches.add(search);
+            if (stopped) {
+                search.stop();
+            }
+        }
+    }
+
+    /**
+     * Searches the game's current position with up to threads threads. The
+     * game itself is only read; every thread searches a copy.
+     *
+     * @param game    the position to search
+     * @param limits  how deep and how long to search
+     * @param threads how many threads to use, capped at MAX_THREADS
+     * @param onDepth called with the main thread's best line and score after
+     *                each completed depth
+     * @return the main thread's result, with nodes counted over all threads
+     */
+    public static SearchResult search(ChessGame game, SearchLimits limits, int threads,
+                                      Consumer<SearchResult> onDepth) {
+        return search(game, limits, threads, TranspositionTable.shared(), onDepth);
+    }
+
+    public static SearchResult search(ChessGame game, SearchLimits limits, int threads,
+                                      TranspositionTable table, Consumer<SearchResult> onDepth) {
+        return search(game, limits, threads, table, onDepth, new Handle());
+    }
+
+    /**
+     * Same as search(ChessGame, SearchLimits, int, TranspositionTable, Consumer),
+     * stopping every thread of the search when handle is stopped
+     */
+    public static SearchResult search(ChessGame game, SearchLimits limits, int threads,
+                                      TranspositionTable table, Consumer<SearchResult> onDepth,
+                                      Handle handle) {
+        table.newSearch();
+        int helperCount = Math.max(0, Math.min(threads, MAX_THREADS) - 1);
+        var helpers = new ArrayList<Search>(helperCount);
+        var futures = new ArrayList<Future<SearchResult>>(helperCount);
+        for (int i = 0; i < helperCount; i++) {
+            var helper = new Search(game.copy(), table);
+            helper.firstDepth = 1 + (i % 2);
+            helper.depthStep = 1 + (i % 2);
+            helper.newGeneration = false;
+            helpers.add(helper);
+            handle.add(helper);
+            futures.add(HELPERS.submit(() -> helper.search(limits)));
+        }
+
+        var main = new Search(game.copy(), table);
+        main.newGeneration = false;
+        handle.add(main);
+        SearchResult result;
+        try {
+            result = main.search(limits, onDepth);
+        } finally {
+            // A helper still queued behind other requests returns at once
+            for (var helper : helpers) {
+                helper.stop();
+            }
+        }
+
+        long nodes = result.nodes();
+        for (var future : futures) {
+            try {
+                nodes += future.get().nodes();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return new SearchResult(result.bestMove(), result.score(), result.depth(), nodes,
+                result.principalVariation());
+    }
+}
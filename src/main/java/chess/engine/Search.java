@@ -0,0 +1,375 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Iterative-deepening alpha-beta search over a ChessGame. Each iteration
+ * searches one ply deeper, trying the previous best move first; captures are
+ * ordered most valuable victim first, then killer moves and the history
+ * heuristic order the quiet moves. At the horizon a quiescence search plays
+ * out captures so a position is never scored in the middle of an exchange.
+ * <p>
+ * Results are kept in a TranspositionTable, by default the one shared by the
+ * whole JVM; a position found there deep enough is not searched again, and
+ * its best move is otherwise tried first.
+ * <p>
+ * The search plays moves on the game it is given with applyMove/undoMove and
+ * leaves it as it found it. One Search belongs to one game and one thread.
+ */
+public class Search {
+
+    public static final int MATE = 32000;
+    public static final int MAX_PLY = 128;
+    private static final int INFINITY = MATE + 1;
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final ChessGame game;
+    private final TranspositionTable table;
+    private final MoveList[] moveLists = new MoveList[MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[64][64];
+
+    /*
+     * Triangular principal variation table: pv[ply] holds the best line found
+     * from ply onwards, starting at index ply and ending before pvLength[ply].
+     */
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    /*
+     * Helper threads in a parallel search start at a different depth and skip
+     * every other one, so they fill the shared table ahead of the main thread.
+     */
+    int firstDepth = 1;
+    int depthStep = 1;
+
+    /*
+     * Whether search starts a new table generation. ParallelSearch starts one
+     * itself for the whole request and clears this on every thread it runs.
+     */
+    boolean newGeneration = true;
+
+    private long nodes;
+    private long deadline;
+    private volatile boolean stopped;
+
+    public Search(ChessGame game) {
+        this(game, TranspositionTable.shared());
+    }
+
+    public Search(ChessGame game, TranspositionTable table) {
+        this.game = game;
+        this.table = table;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+            moveScores[ply] = new int[64];
+        }
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible; it returns the best
+     * move of the last completed depth. Called before the search starts, it
+     * makes the search return at once.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Searches the game's current position for the team to move
+     *
+     * @param limits how deep and how long to search
+     * @return the best move found and its score
+     */
+    public SearchResult search(SearchLimits limits) {
+        return search(limits, result -> { });
+    }
+
+    /**
+     * Same as search(SearchLimits), reporting the result of every completed
+     * depth as it finishes
+     *
+     * @param limits  how deep and how long to search
+     * @param onDepth called with the best line and score after each depth
+     * @return the best move found and its score
+     */
+    public SearchResult search(SearchLimits limits, Consumer<SearchResult> onDepth) {
+        int maxDepth = (limits.depth() > 0) ? Math.min(limits.depth(), MAX_PLY - 1) : MAX_PLY - 1;
+        deadline = (limits.timeMillis() > 0) ? System.nanoTime() + limits.timeMillis() * 1_000_000L : Long.MAX_VALUE;
+        nodes = 0;
+        if (newGeneration) {
+            table.newSearch();
+        }
+        for (var row : killers) {
+            row[0] = SearchResult.NO_MOVE;
+            row[1] = SearchResult.NO_MOVE;
+        }
+        for (var row : history) {
+            Arrays.fill(row, 0);
+        }
+
+        var rootMoves = moveLists[0];
+        game.legalMoves(rootMoves);
+        if (rootMoves.isEmpty()) {
+            int score = game.isInCheck(game.getTeamTurn()) ? -MATE : 0;
+            stopped = false;
+            return new SearchResult(SearchResult.NO_MOVE, score, 0, 0, new int[0]);
+        }
+
+        var best = new SearchResult(rootMoves.get(0), 0, 0, 0, new int[]{rootMoves.get(0)});
+        for (int depth = firstDepth; depth <= maxDepth; depth += depthStep) {
+            int bestMove = SearchResult.NO_MOVE;
+            int[] bestLine = null;
+            int alpha = -INFINITY;
+            moveToFront(rootMoves, best.bestMove());
+            for (int i = 0; i < rootMoves.size(); i++) {
+                int move = rootMoves.get(i);
+                game.applyMove(move);
+                int score = -alphaBeta(depth - 1, 1, -INFINITY, -alpha);
+                game.undoMove();
+                if (stopped) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    bestLine = new int[pvLength[1]];
+                    bestLine[0] = move;
+                    System.arraycopy(pv[1], 1, bestLine, 1, pvLength[1] - 1);
+                }
+            }
+            if (stopped && (best.depth() > 0 || bestMove == SearchResult.NO_MOVE)) {
+                break;
+            }
+            best = new SearchResult(bestMove, alpha, depth, nodes, bestLine);
+            table.store(game.getZobristKey(), bestMove, alpha, depth, TranspositionTable.EXACT, 0);
+            onDepth.accept(best);
+            if (stopped || Math.abs(alpha) >= MATE - MAX_PLY) {
+                break;
+            }
+        }
+        stopped = false;
+        return new SearchResult(best.bestMove(), best.score(), best.depth(), nodes, best.principalVariation());
+    }
+
+    private int alphaBeta(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (game.getHalfmoveClock() >= 100 || game.repetitions() > 0) {
+            return 0;
+        }
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiescence(ply, alpha, beta);
+        }
+
+        long key = game.getZobristKey();
+        long entry = table.probe(key);
+        int hashMove = SearchResult.NO_MOVE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        var moves = moveLists[ply];
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int count = scoreMoves(ply, moves, false, hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = SearchResult.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, moves, i, count);
+            game.applyMove(move);
+            int score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (score >= beta) {
+                        if (!PackedMove.is(move, PackedMove.CAPTURE)) {
+                            rememberQuiet(ply, move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        int bound = (best >= beta) ? TranspositionTable.LOWER
+                : (best > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, best, depth, bound, ply);
+        return best;
+    }
+
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        int standPat = Evaluator.evaluate(game);
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        var moves = moveLists[ply];
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            return game.isInCheck(game.getTeamTurn()) ? -MATE + ply : 0;
+        }
+        int tactical = scoreMoves(ply, moves, true, SearchResult.NO_MOVE);
+        for (int i = 0; i < tactical; i++) {
+            int move = nextMove(ply, moves, i, tactical);
+            game.applyMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(ply, move);
+                if (score >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /*
+     * A move that raises alpha becomes the start of this node's line, followed
+     * by the line its child just found.
+     */
+    private void updatePrincipalVariation(int ply, int move) {
+        pv[ply][ply] = move;
+        int childEnd = Math.max(pvLength[ply + 1], ply + 1);
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, childEnd - ply - 1);
+        pvLength[ply] = childEnd;
+    }
+
+    /*
+     * Scores every move for ordering. The table's best move goes first, then
+     * captures and promotions, most valuable victim then least valuable
+     * attacker; killers and the history table order the quiet moves. With
+     * tacticalOnly the quiet moves are moved out of the way, and the number of
+     * moves kept in front is returned.
+     */
+    private int scoreMoves(int ply, MoveList moves, boolean tacticalOnly, int hashMove) {
+        if (moveScores[ply].length < moves.size()) {
+            moveScores[ply] = new int[moves.size() * 2];
+        }
+        var scores = moveScores[ply];
+        var board = game.getBoard();
+        int kept = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            var promotion = PackedMove.promotion(move);
+            if (move == hashMove) {
+                score = 2_000_000;
+            } else if (PackedMove.is(move, PackedMove.CAPTURE) || promotion != null) {
+                var victim = board.getPiece(PackedMove.to(move));
+                int victimValue = (victim != null) ? Evaluator.VALUES[victim.getPieceType().ordinal()]
+                        : (PackedMove.is(move, PackedMove.EN_PASSANT) ? Evaluator.VALUES[ChessPiece.PieceType.PAWN.ordinal()] : 0);
+                int attacker = board.getPiece(PackedMove.from(move)).getPieceType().ordinal();
+                score = 1_000_000 + victimValue * 16 - Evaluator.VALUES[attacker] / 10;
+                if (promotion != null) {
+                    score += Evaluator.VALUES[promotion.ordinal()];
+                }
+            } else if (tacticalOnly) {
+                continue;
+            } else if (move == killers[ply][0]) {
+                score = 900_000;
+            } else if (move == killers[ply][1]) {
+                score = 800_000;
+            } else {
+                score = Math.min(history[PackedMove.from(move)][PackedMove.to(move)], 700_000);
+            }
+            moves.set(i, moves.get(kept));
+            moves.set(kept, move);
+            scores[kept++] = score;
+        }
+        return kept;
+    }
+
+    /*
+     * Selection sort one step at a time: most nodes cut off after the first
+     * few moves, so sorting the whole list up front would be wasted work.
+     */
+    private int nextMove(int ply, MoveList moves, int index, int count) {
+        var scores = moveScores[ply];
+        int bestIndex = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        int move = moves.get(bestIndex);
+        if (bestIndex != index) {
+            moves.set(bestIndex, moves.get(index));
+            moves.set(index, move);
+            int score = scores[bestIndex];
+            scores[bestIndex] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private void rememberQuiet(int ply, int move, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        history[PackedMove.from(move)][PackedMove.to(move)] += depth * depth;
+    }
+
+    private static void moveToFront(MoveList moves, int move) {
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.get(i) == move) {
+                for (int j = i; j > 0; j--) {
+                    moves.set(j, moves.get(j - 1));
+                }
+                moves.set(0, move);
+                return;
+            }
+        }
+    }
+}
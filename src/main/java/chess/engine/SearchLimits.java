@@ -0,0 +1,17 @@
+package chess.engine;
+
+/**
+ * How far a search may go: a depth in plies and a wall-clock budget in
+ * milliseconds. A value of 0 or less leaves that limit off; the search always
+ * finishes at least depth 1.
+ */
+public record SearchLimits(int depth, long timeMillis) {
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(0, timeMillis);
+    }
+}
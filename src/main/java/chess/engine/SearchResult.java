@@ -0,0 +1,42 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.PackedMove;
+
+/**
+ * The outcome of a search: the best move as a packed move (see PackedMove),
+ * its score in centipawns for the team to move, the deepest completed depth,
+ * the number of positions visited and the principal variation, the line both
+ * teams are expected to play starting with the best move. bestMove is NO_MOVE
+ * when the team has no legal moves.
+ */
+public record SearchResult(int bestMove, int score, int depth, long nodes, int[] principalVariation) {
+
+    public static final int NO_MOVE = 0;
+
+    public ChessMove move() {
+        return (bestMove == NO_MOVE) ? null : PackedMove.toChessMove(bestMove);
+    }
+
+    /**
+     * @return the principal variation in coordinate notation, such as
+     * "e2e4 e7e5 g1f3"
+     */
+    public String principalVariationUci() {
+        var text = new StringBuilder();
+        for (int move : principalVariation) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(PackedMove.toUci(move));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return True if the score is a forced mate for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+}
@@ -0,0 +1,204 @@
+package chess.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of search results keyed by Zobrist key, shared by every
+ * search in the JVM so bots and analysis in different rooms reuse each
+ * other's work.
+ * <p>
+ * Each entry is two longs in one array: the key XORed with the data, then the
+ * data. Writers store both without locking; a reader only accepts an entry if
+ * the two still XOR back to its key, so a torn write from two threads racing
+ * on one slot reads as a miss instead of a wrong result.
+ * <p>
+ * The data long packs the best move (bits 0-18), the score (19-34), the depth
+ * (35-42), the bound type (43-44) and the search generation (45-52). A slot is
+ * replaced when it holds a result from an older search, or when the new result
+ * is at least as deep. An exact score for the same position also replaces a
+ * deeper bound, since a bound only narrows the window and an exact score ends
+ * the search of that node.
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int DEFAULT_MEGABYTES = 32;
+    private static volatile TranspositionTable shared;
+
+    private final long[] entries;
+    private final int mask;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two number of
+     *                  entries (16 bytes each)
+     */
+    public TranspositionTable(int megabytes) {
+        long slots = Math.max(1L, (long) megabytes * 1024 * 1024 / 16);
+        int size = (int) Math.min(Long.highestOneBit(slots), 1 << 29);
+        entries = new long[size * 2];
+        mask = size - 1;
+    }
+
+    /**
+     * Gets the table shared by all searches, sized by the chess.tt.mb system
+     * property (32 MB by default) when first used
+     */
+    public static TranspositionTable shared() {
+        var table = shared;
+        if (table == null) {
+            synchronized (TranspositionTable.class) {
+                table = shared;
+                if (table == null) {
+                    table = new TranspositionTable(Integer.getInteger("chess.tt.mb", DEFAULT_MEGABYTES));
+                    shared = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are
+     * replaced first. Called once per request, not by every thread searching
+     * it, since a search's own entries count as old once the generation moves
+     * on.
+     */
+    public void newSearch() {
+        generation.updateAndGet(current -> (current + 1) & 0xFF);
+    }
+
+    int currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return the packed entry for the position, or 0 if the table has none
+     */
+    public long probe(long key) {
+        probes.increment();
+        int slot = ((int) key & mask) << 1;
+        long data = entries[slot + 1];
+        if (data != 0 && (entries[slot] ^ data) == key) {
+            hits.increment();
+            return data;
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result. Mate scores are stored relative to the position
+     * rather than the root, so they stay correct when reached at another ply.
+     *
+     * @param key   the position's Zobrist key
+     * @param move  the best move as a packed move, or 0 if none is known
+     * @param score the score for the team to move
+     * @param depth the depth searched
+     * @param bound EXACT, LOWER (score is at least this) or UPPER (at most)
+     * @param ply   how far the position is from the root of the search
+     */
+    public void store(long key, int move, int score, int depth, int bound, int ply) {
+        int slot = ((int) key & mask) << 1;
+        int current = generation.get();
+        long old = entries[slot + 1];
+        boolean sameKey = old != 0 && (entries[slot] ^ old) == key;
+        if (old != 0 && generation(old) == current && depth(old) > depth && (!sameKey || bound != EXACT)) {
+            return;
+        }
+        if (move == 0 && sameKey) {
+            move = move(old);
+        }
+        long data = (move & 0x7FFFFL)
+                | ((long) (toTable(score, ply) & 0xFFFF) << 19)
+                | ((long) (Math.max(depth, 0) & 0xFF) << 35)
+                | ((long) bound << 43)
+                | ((long) current << 45);
+        entries[slot] = key ^ data;
+        entries[slot + 1] = data;
+        stores.increment();
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0x7FFFF);
+    }
+
+    /**
+     * @return the stored score, adjusted back to a distance from the root
+     */
+    public static int score(long entry, int ply) {
+        int score = (short) (entry >>> 19);
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 35) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 43) & 0x3;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 45) & 0xFF;
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Empties the table and resets the counters
+     */
+    public void clear() {
+        Arrays.fill(entries, 0L);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return the fraction of probes that found their position, 0 if there
+     * have been none
+     */
+    public double hitRate() {
+        long total = probes.sum();
+        return (total == 0) ? 0.0 : (double) hits.sum() / total;
+    }
+}
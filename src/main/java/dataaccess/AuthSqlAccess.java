@@ -2,6 +2,8 @@ package dataaccess;
 
 import data.AuthData;
 
+import java.sql.SQLException;
+
 public class AuthSqlAccess implements AuthDAO {
     public AuthSqlAccess() throws DataAccessException {
         configureDatabase();
@@ -26,7 +28,7 @@ public class AuthSqlAccess implements AuthDAO {
                     }
                 }
             }
-        } catch (Exception e) {
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return null;
@@ -0,0 +1,142 @@
+package dataaccess;
+
+import data.AuthData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers auth token lookups in front of another AuthDAO. Every REST call
+ * and websocket command checks a token, so most lookups are answered from
+ * memory. Unknown tokens are remembered too, for a shorter time, so a client
+ * retrying with a stale token does not reach the database each time.
+ * <p>
+ * The cache holds at most maxEntries tokens, dropping the least recently used
+ * first. createAuth, deleteAuth and clear go through to the database and
+ * update the cache, so a logout takes effect at once.
+ */
+public class CachingAuthDAO implements AuthDAO {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TTL_MILLIS = 300_000;
+    private static final long DEFAULT_NEGATIVE_TTL_MILLIS = 30_000;
+
+    private final AuthDAO store;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<String, Entry> cache;
+
+    // Counts deletes and clears, so a lookup that raced one does not cache what it read
+    private long invalidations = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /*
+     * A cached lookup; authData is null for a token the store does not have.
+     */
+    private record Entry(AuthData authData, long expiresAt) {
+    }
+
+    public CachingAuthDAO(AuthDAO store) {
+        this(store, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+    }
+
+    /**
+     * @param store               where tokens are kept
+     * @param maxEntries          how many tokens to remember
+     * @param ttlMillis           how long a found token is remembered
+     * @param negativeTtlMillis   how long an unknown token is remembered
+     */
+    public CachingAuthDAO(AuthDAO store, int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.store = store;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public void createAuth(AuthData a) throws DataAccessException {
+        store.createAuth(a);
+        put(a.authToken(), a);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return store.getAuth(null);
+        }
+        long seen;
+        synchronized (cache) {
+            var entry = cache.get(authToken);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.authData();
+            }
+            seen = invalidations;
+        }
+        misses.increment();
+        var authData = store.getAuth(authToken);
+        synchronized (cache) {
+            if (invalidations == seen) {
+                put(authToken, authData);
+            }
+        }
+        return authData;
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        store.deleteAuth(authToken);
+        synchronized (cache) {
+            invalidations++;
+            cache.remove(authToken);
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        store.clear();
+        synchronized (cache) {
+            invalidations++;
+            cache.clear();
+        }
+    }
+
+    private void put(String authToken, AuthData authData) {
+        long ttl = (authData != null) ? ttlNanos : negativeTtlNanos;
+        synchronized (cache) {
+            cache.put(authToken, new Entry(authData, System.nanoTime() + ttl));
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups answered from memory, 0 if there have
+     * been none
+     */
+    public double hitRate() {
+        long total = hits.sum() + misses.sum();
+        return (total == 0) ? 0.0 : (double) hits.sum() / total;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
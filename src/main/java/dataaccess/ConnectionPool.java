@@ -0,0 +1,361 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of database connections. Callers borrow a connection and
+ * close it as usual; closing hands it back to the pool instead of ending the
+ * session, so a DAO call no longer pays for a new TCP connection and login.
+ * <p>
+ * At most maxSize connections are out at once; a borrower waits up to
+ * acquireTimeout for one and then gets a 503. Idle connections are reused
+ * newest first. One that has sat idle for more than a moment is checked with
+ * isValid before it is handed out, and one past its maximum lifetime is
+ * closed instead, so connections the server dropped are never handed out. A
+ * background thread closes connections left idle longer than idleTimeout.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Opens a new connection to the database
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+
+    private final Semaphore permits;
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder retired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /*
+     * A connection as the pool sees it: when it was opened and when it was
+     * last handed back.
+     */
+    private static final class PooledConnection {
+        final Connection connection;
+        final long createdAt;
+        long returnedAt;
+
+        PooledConnection(Connection connection, long now) {
+            this.connection = connection;
+            this.createdAt = now;
+            this.returnedAt = now;
+        }
+    }
+
+    /**
+     * @param factory              opens new connections
+     * @param maxSize              how many connections may be open at once
+     * @param acquireTimeoutMillis how long a borrower waits for a free one
+     * @param idleTimeoutMillis    how long a connection may sit unused
+     * @param maxLifetimeMillis    how long a connection is kept in all
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long acquireTimeoutMillis,
+                          long idleTimeoutMillis, long maxLifetimeMillis) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "db-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection. Close it to give it back; a try-with-resources
+     * block does that.
+     *
+     * @throws DataAccessException with status 503 if none frees up in time,
+     *                             or 500 if a new one cannot be opened
+     */
+    public Connection getConnection() throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException(500, "Error: connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new DataAccessException(503, "Error: timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException(500, "Error: interrupted waiting for a database connection");
+        }
+        waitNanos.add(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = takeIdle()) != null) {
+                if (usable(pooled, System.nanoTime())) {
+                    borrowed.increment();
+                    return wrap(pooled);
+                }
+                retire(pooled);
+            }
+            var connection = factory.open();
+            created.increment();
+            borrowed.increment();
+            return wrap(new PooledConnection(connection, System.nanoTime()));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DataAccessException(500, "Error: failed to connect to database: " + e.getMessage());
+        }
+    }
+
+    private synchronized PooledConnection takeIdle() {
+        return idle.pollFirst();
+    }
+
+    /*
+     * A connection used within the last half second is trusted; one idle for
+     * longer is pinged first, since MySQL drops sessions it considers stale.
+     */
+    private boolean usable(PooledConnection pooled, long now) {
+        if (now - pooled.createdAt > maxLifetimeNanos) {
+            return false;
+        }
+        if (now - pooled.returnedAt < VALIDATE_AFTER_IDLE_NANOS) {
+            return true;
+        }
+        try {
+            if (pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return true;
+            }
+        } catch (SQLException ignored) {
+        }
+        validationFailures.increment();
+        return false;
+    }
+
+    /*
+     * Takes a connection back from a borrower. Anything the borrower left
+     * half done is rolled back so the next one starts clean.
+     */
+    private void giveBack(PooledConnection pooled) {
+        try {
+            boolean keep = !closed && !pooled.connection.isClosed()
+                    && System.nanoTime() - pooled.createdAt <= maxLifetimeNanos;
+            if (keep && !pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            if (keep) {
+                pooled.returnedAt = System.nanoTime();
+                synchronized (this) {
+                    // close may have emptied the pool while this was rolling back
+                    keep = !closed;
+                    if (keep) {
+                        idle.addFirst(pooled);
+                    }
+                }
+            }
+            if (!keep) {
+                retire(pooled);
+            }
+        } catch (SQLException e) {
+            retire(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void retire(PooledConnection pooled) {
+        retired.increment();
+        try {
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /*
+     * The least recently used connections sit at the end of the deque, so
+     * eviction works back from there.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        while (true) {
+            PooledConnection oldest;
+            synchronized (this) {
+                oldest = idle.peekLast();
+                if (oldest == null || (now - oldest.returnedAt <= idleTimeoutNanos
+                        && now - oldest.createdAt <= maxLifetimeNanos)) {
+                    return;
+                }
+                idle.pollLast();
+            }
+            retire(oldest);
+        }
+    }
+
+    private Connection wrap(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handle(pooled));
+    }
+
+    /*
+     * What a borrower holds: every call goes to the real connection, except
+     * close, which returns it to the pool once. Calls after close fail as
+     * they would on a closed connection.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    if (returned) {
+                        return true;
+                    }
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled " + pooled.connection;
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Connection is closed");
+                    }
+                }
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops handing out new ones.
+     * Connections still borrowed are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        while (true) {
+            var pooled = takeIdle();
+            if (pooled == null) {
+                return;
+            }
+            retire(pooled);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how many connections are borrowed right now
+     */
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return how many borrowers are waiting for a connection
+     */
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getBorrowed() {
+        return borrowed.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    /**
+     * @return how many connections have been closed for being stale, broken
+     * or idle too long
+     */
+    public long getRetired() {
+        return retired.sum();
+    }
+
+    /**
+     * @return the average time a borrower waited for a connection, in
+     * milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = borrowed.sum();
+        return (count == 0) ? 0.0 : waitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d waiting=%d created=%d borrowed=%d timeouts=%d "
+                        + "validationFailures=%d retired=%d averageWaitMillis=%.2f",
+                getActive(), getIdle(), getWaiting(), getCreated(), getBorrowed(), getTimeouts(),
+                getValidationFailures(), getRetired(), getAverageWaitMillis());
+    }
+}
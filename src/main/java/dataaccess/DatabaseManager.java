@@ -8,6 +8,7 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static volatile ConnectionPool pool;
 
     /*
      * Load the database information for the db.properties file.
@@ -30,10 +31,11 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
-     * The easiest way to do that is with a try-with-resource block.
+     * Borrows a connection to the database from the pool, with the catalog set
+     * from the properties specified in db.properties. Connections should be
+     * short-lived, and you must close the connection when you are done with it
+     * so it goes back to the pool. The easiest way to do that is with a
+     * try-with-resource block.
      * <br/>
      * <code>
      * try (var conn = DatabaseManager.getConnection()) {
@@ -42,13 +44,67 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
+        return pool().getConnection();
+    }
+
+    /**
+     * Gets the connection pool, created on first use. Its size and timeouts
+     * come from the db.pool.maxSize, db.pool.acquireTimeoutMillis,
+     * db.pool.idleTimeoutMillis and db.pool.maxLifetimeMillis environment
+     * variables, with defaults of 10 connections, 5 seconds, 5 minutes and
+     * 30 minutes.
+     */
+    public static ConnectionPool pool() {
+        var current = pool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(DatabaseManager::openConnection,
+                            (int) setting("db.pool.maxSize", 10),
+                            setting("db.pool.acquireTimeoutMillis", 5_000),
+                            setting("db.pool.idleTimeoutMillis", 300_000),
+                            setting("db.pool.maxLifetimeMillis", 1_800_000));
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Closes the pool's idle connections. The next getConnection starts a
+     * new pool.
+     */
+    public static void closePool() {
+        synchronized (DatabaseManager.class) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
+    }
+
+    private static Connection openConnection() throws SQLException {
+        var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
         try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
             conn.setCatalog(databaseName);
-            return conn;
         } catch (SQLException ex) {
-            throw new DataAccessException(500, "Error: failed to create database: " + ex.getMessage());
+            conn.close();
+            throw ex;
+        }
+        return conn;
+    }
+
+    private static long setting(String name, long defaultValue) {
+        var value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("Invalid " + name + ": " + value);
         }
     }
 
@@ -13,5 +13,15 @@ public interface GameDAO {
 
     void updateGame(GameData u) throws DataAccessException;
 
+    /**
+     * Saves several games at once. Stores that can write them in one round
+     * trip should override this.
+     */
+    default void updateGames(Collection<GameData> games) throws DataAccessException {
+        for (var game : games) {
+            updateGame(game);
+        }
+    }
+
     void clear() throws DataAccessException;
 }
@@ -1,16 +1,48 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.PackedMove;
 import com.google.gson.Gson;
 import data.GameData;
 import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
 
+/**
+ * Stores games as a log of moves. The game table holds the seats and whether
+ * the game is over; game_moves holds every move as a packed move (see
+ * PackedMove) keyed by room and ply; game_snapshots holds the whole game every
+ * so often in the binary form of ChessGame.toBytes, repetition history
+ * included. A game is loaded from its latest snapshot and the moves after it,
+ * and saving one only appends the moves made since it was loaded.
+ * <p>
+ * Rows from before the move log, with the whole game as JSON in the game
+ * column, and snapshots stored as FEN text are converted when the server
+ * starts; a JSON row written afterwards by an older server is converted the
+ * first time it is read.
+ */
 public class GameSqlAccess implements GameDAO {
+    private static final int SNAPSHOT_INTERVAL = 20;
+
     private final Gson serializer = new Gson();
 
+    /*
+     * What is stored for a room: the ply the move log reaches, the latest
+     * snapshot, and the game row. An update only appends moves from there and
+     * only rewrites the game row when a seat or the finished flag changed.
+     * legacy marks a row still holding the whole game as JSON.
+     */
+    private record Saved(int ply, int snapshotPly, String whiteUsername, String blackUsername, boolean gameOver,
+                         boolean legacy) {
+    }
+
     public GameSqlAccess() throws DataAccessException {
         configureDatabase();
     }
@@ -19,37 +51,107 @@ public class GameSqlAccess implements GameDAO {
     public String createGame() throws DataAccessException {
         while (true) {
             String room = GameCodeGenerator();
-            var gameData = getGame(room);
-            if (gameData == null) {
-                var statement = "INSERT INTO game (roomCode, game) VALUES(?, ?)";
-                var game = serializer.toJson(new ChessGame(), ChessGame.class);
-                SqlUtils.executeUpdate(statement, room, game);
+            if (!exists(room)) {
+                var game = new ChessGame();
+                try (var conn = DatabaseManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        SqlUtils.execute(conn, "INSERT INTO game (roomCode) VALUES(?)", room);
+                        SqlUtils.execute(conn, "INSERT INTO game_snapshots (roomCode, ply, state) VALUES(?, ?, ?)",
+                                room, game.getPly(), game.toBytes());
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                } catch (SQLException e) {
+                    throw new DataAccessException(500, String.format("unable to update database: %s", e.getMessage()));
+                }
                 return room;
             }
         }
     }
 
+    private boolean exists(String roomCode) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement("SELECT 1 FROM game WHERE roomCode = ?")) {
+                preparedStatement.setString(1, roomCode);
+                try (var rs = preparedStatement.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public GameData getGame(String roomCode) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            var statement = "SELECT whiteUsername, blackUsername, game FROM game WHERE roomCode = ?";
+            String whiteUsername;
+            String blackUsername;
+            String json;
+            boolean gameOver;
+            var statement = "SELECT whiteUsername, blackUsername, game, gameOver FROM game WHERE roomCode = ?";
+            try (var preparedStatement = conn.prepareStatement(statement)) {
+                preparedStatement.setString(1, roomCode);
+                try (var rs = preparedStatement.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    whiteUsername = rs.getString("whiteUsername");
+                    blackUsername = rs.getString("blackUsername");
+                    json = rs.getString("game");
+                    gameOver = rs.getBoolean("gameOver");
+                }
+            }
+
+            ChessGame game = null;
+            int snapshotPly = 0;
+            statement = "SELECT ply, state FROM game_snapshots WHERE roomCode = ? ORDER BY ply DESC LIMIT 1";
             try (var preparedStatement = conn.prepareStatement(statement)) {
                 preparedStatement.setString(1, roomCode);
                 try (var rs = preparedStatement.executeQuery()) {
                     if (rs.next()) {
-                        var whiteUsername = rs.getString("whiteUsername");
-                        var blackUsername = rs.getString("blackUsername");
-//                        var gameName = rs.getString("gameName");
-                        var game = rs.getString("game");
-                        var gameObject = serializer.fromJson(game, ChessGame.class);
-                        return new GameData(roomCode, whiteUsername, blackUsername, gameObject);
+                        snapshotPly = rs.getInt("ply");
+                        game = ChessGame.fromBytes(rs.getBytes("state"));
                     }
                 }
             }
-        } catch (Exception e) {
+
+            if (game != null) {
+                replay(conn, roomCode, game, snapshotPly);
+            } else {
+                game = (json != null) ? serializer.fromJson(json, ChessGame.class) : new ChessGame();
+                game.gameOver = gameOver || game.gameOver;
+                snapshotPly = game.getPly();
+                migrateJsonRow(conn, roomCode, game);
+            }
+            game.gameOver = game.gameOver || gameOver;
+            return new GameData(roomCode, whiteUsername, blackUsername, game);
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        return null;
+    }
+
+    private void replay(Connection conn, String roomCode, ChessGame game, int fromPly)
+            throws SQLException, DataAccessException {
+        var statement = "SELECT ply, move FROM game_moves WHERE roomCode = ? AND ply >= ? ORDER BY ply";
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            preparedStatement.setString(1, roomCode);
+            preparedStatement.setInt(2, fromPly);
+            try (var rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    int move = rs.getInt("move");
+                    try {
+                        game.makeMove(PackedMove.toChessMove(move));
+                    } catch (InvalidMoveException e) {
+                        throw new DataAccessException(500, String.format("Error: bad move %s at ply %d in room %s",
+                                PackedMove.toUci(move), rs.getInt("ply"), roomCode));
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -68,7 +170,7 @@ public class GameSqlAccess implements GameDAO {
                     }
                 }
             }
-        } catch (Exception e) {
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         return allGames;
@@ -76,9 +178,109 @@ public class GameSqlAccess implements GameDAO {
 
     @Override
     public void updateGame(GameData u) throws DataAccessException {
-        var statement = "UPDATE game SET whiteUsername = ?, blackUsername = ?, roomCode = ?, game = ? WHERE roomCode = ?";
-        var game = serializer.toJson(u.game(), ChessGame.class);
-        SqlUtils.executeUpdate(statement, u.whiteUsername(), u.blackUsername(), u.roomCode(), game, u.roomCode());
+        updateGames(List.of(u));
+    }
+
+    /**
+     * Appends the moves made since each game was last saved, adds a snapshot
+     * where one is due and updates the game rows whose seats changed, all in
+     * one transaction. Where the log ends is read inside the transaction, with
+     * the game rows locked, so several servers can share the tables. A game
+     * whose saved moves do not reach back to the end of the log starts again
+     * from a new snapshot of its position.
+     *
+     * @throws DataAccessException with status 409 if a game is behind its log,
+     *                             as when it was read before another request
+     *                             saved a move; nothing is written then
+     */
+    @Override
+    public void updateGames(Collection<GameData> games) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                var snapshotRows = new ArrayList<Object[]>();
+                var moveRows = new ArrayList<Object[]>();
+                var gameRows = new ArrayList<Object[]>();
+                var next = new HashMap<String, Saved>();
+
+                for (var u : games) {
+                    var roomCode = u.roomCode();
+                    var before = next.containsKey(roomCode) ? next.get(roomCode) : savedState(conn, roomCode);
+                    if (before == null) {
+                        continue;
+                    }
+                    var game = u.game();
+                    int ply = game.getPly();
+                    int[] recent = game.getRecentMoves();
+                    int firstPly = ply - recent.length;
+                    int snapshotPly = before.snapshotPly();
+                    if (ply < before.ply()) {
+                        throw new DataAccessException(409, String.format(
+                                "Error: game %s changed since it was read, try again", roomCode));
+                    } else if (firstPly > before.ply()) {
+                        snapshotRows.add(new Object[]{roomCode, ply, game.toBytes()});
+                        snapshotPly = ply;
+                    } else {
+                        for (int p = before.ply(); p < ply; p++) {
+                            moveRows.add(new Object[]{roomCode, p, recent[p - firstPly]});
+                        }
+                        if (ply - snapshotPly >= SNAPSHOT_INTERVAL) {
+                            snapshotRows.add(new Object[]{roomCode, ply, game.toBytes()});
+                            snapshotPly = ply;
+                        }
+                    }
+                    var after = new Saved(ply, snapshotPly, u.whiteUsername(), u.blackUsername(), game.gameOver, false);
+                    if (before.legacy()
+                            || !Objects.equals(before.whiteUsername(), after.whiteUsername())
+                            || !Objects.equals(before.blackUsername(), after.blackUsername())
+                            || before.gameOver() != after.gameOver()) {
+                        gameRows.add(new Object[]{u.whiteUsername(), u.blackUsername(), game.gameOver, roomCode});
+                    }
+                    next.put(roomCode, after);
+                }
+
+                SqlUtils.executeBatch(conn, "INSERT INTO game_snapshots (roomCode, ply, state) VALUES(?, ?, ?)", snapshotRows);
+                SqlUtils.executeBatch(conn, "INSERT INTO game_moves (roomCode, ply, move) VALUES(?, ?, ?)", moveRows);
+                SqlUtils.executeBatch(conn,
+                        "UPDATE game SET whiteUsername = ?, blackUsername = ?, gameOver = ?, game = NULL WHERE roomCode = ?",
+                        gameRows);
+                conn.commit();
+            } catch (SQLException | DataAccessException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(500, String.format("unable to update database: %s", e.getMessage()));
+        }
+    }
+
+    /*
+     * Reads where a room's log ends and locks its game row until the
+     * transaction ends. A row from before the move log, with no snapshot yet,
+     * reports ply -1 so its first save writes one.
+     */
+    private Saved savedState(Connection conn, String roomCode) throws SQLException {
+        var statement = """
+                SELECT whiteUsername, blackUsername, gameOver, game IS NOT NULL AS legacy,
+                    (SELECT MAX(ply) FROM game_moves m WHERE m.roomCode = g.roomCode) AS lastMove,
+                    (SELECT MAX(ply) FROM game_snapshots s WHERE s.roomCode = g.roomCode) AS lastSnapshot
+                FROM game g WHERE roomCode = ? FOR UPDATE""";
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            preparedStatement.setString(1, roomCode);
+            try (var rs = preparedStatement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int lastMove = rs.getInt("lastMove");
+                int ply = rs.wasNull() ? -1 : lastMove + 1;
+                int snapshotPly = rs.getInt("lastSnapshot");
+                if (rs.wasNull()) {
+                    snapshotPly = -1;
+                }
+                return new Saved(Math.max(ply, snapshotPly), snapshotPly, rs.getString("whiteUsername"),
+                        rs.getString("blackUsername"), rs.getBoolean("gameOver"), rs.getBoolean("legacy"));
+            }
+        }
     }
 
     @Override
@@ -94,14 +296,106 @@ public class GameSqlAccess implements GameDAO {
                 whiteUsername VARCHAR(255) DEFAULT NULL,
                 blackUsername VARCHAR(255) DEFAULT NULL,
                 game TEXT DEFAULT NULL,
+                gameOver BOOLEAN NOT NULL DEFAULT FALSE,
                 PRIMARY KEY (roomCode),
                 FOREIGN KEY (whiteUsername) REFERENCES user(username) ON DELETE CASCADE,
                 FOREIGN KEY (blackUsername) REFERENCES user(username) ON DELETE CASCADE
             )""";
 
             SqlUtils.configureDatabase(createUserTable);
+            SqlUtils.addColumnIfMissing("game", "gameOver", "BOOLEAN NOT NULL DEFAULT FALSE");
+
+        var createMovesTable = """
+            CREATE TABLE  IF NOT EXISTS game_moves (
+                roomCode VARCHAR(255) NOT NULL,
+                ply INT NOT NULL,
+                move SMALLINT UNSIGNED NOT NULL,
+                PRIMARY KEY (roomCode, ply),
+                FOREIGN KEY (roomCode) REFERENCES game(roomCode) ON DELETE CASCADE
+            )""";
+
+            SqlUtils.configureDatabase(createMovesTable);
+
+        var createSnapshotsTable = """
+            CREATE TABLE  IF NOT EXISTS game_snapshots (
+                roomCode VARCHAR(255) NOT NULL,
+                ply INT NOT NULL,
+                state BLOB NOT NULL,
+                PRIMARY KEY (roomCode, ply),
+                FOREIGN KEY (roomCode) REFERENCES game(roomCode) ON DELETE CASCADE
+            )""";
+
+            SqlUtils.configureDatabase(createSnapshotsTable);
+            migrateFenSnapshots();
+            migrateJsonRows();
 }
 
+    /*
+     * Turns a game stored whole as JSON into the first snapshot of its log.
+     */
+    private void migrateJsonRow(Connection conn, String roomCode, ChessGame game) throws SQLException {
+        SqlUtils.execute(conn, "INSERT INTO game_snapshots (roomCode, ply, state) VALUES(?, ?, ?)",
+                roomCode, game.getPly(), game.toBytes());
+        SqlUtils.execute(conn, "UPDATE game SET game = NULL, gameOver = ? WHERE roomCode = ?", game.gameOver, roomCode);
+    }
+
+    private void migrateJsonRows() throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            var games = new HashMap<String, ChessGame>();
+            try (var preparedStatement = conn.prepareStatement("SELECT roomCode, game FROM game WHERE game IS NOT NULL")) {
+                try (var rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        games.put(rs.getString("roomCode"), serializer.fromJson(rs.getString("game"), ChessGame.class));
+                    }
+                }
+            }
+            for (var entry : games.entrySet()) {
+                conn.setAutoCommit(false);
+                try {
+                    SqlUtils.execute(conn, "DELETE FROM game_snapshots WHERE roomCode = ?", entry.getKey());
+                    SqlUtils.execute(conn, "DELETE FROM game_moves WHERE roomCode = ?", entry.getKey());
+                    migrateJsonRow(conn, entry.getKey(), entry.getValue());
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException(500, String.format("Unable to migrate games: %s", e.getMessage()));
+        }
+    }
+
+    /*
+     * Snapshots were once stored as FEN text. The text has no repetition
+     * history, so the converted snapshot starts without one.
+     */
+    private void migrateFenSnapshots() throws DataAccessException {
+        if (!SqlUtils.columnExists("game_snapshots", "fen")) {
+            return;
+        }
+        SqlUtils.addColumnIfMissing("game_snapshots", "state", "BLOB");
+        try (var conn = DatabaseManager.getConnection()) {
+            var rows = new ArrayList<Object[]>();
+            var statement = "SELECT roomCode, ply, fen FROM game_snapshots WHERE state IS NULL";
+            try (var preparedStatement = conn.prepareStatement(statement)) {
+                try (var rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new Object[]{ChessGame.fromFen(rs.getString("fen")).toBytes(),
+                                rs.getString("roomCode"), rs.getInt("ply")});
+                    }
+                }
+            }
+            SqlUtils.executeBatch(conn, "UPDATE game_snapshots SET state = ? WHERE roomCode = ? AND ply = ?", rows);
+            SqlUtils.execute(conn, "ALTER TABLE game_snapshots DROP COLUMN fen");
+            SqlUtils.execute(conn, "ALTER TABLE game_snapshots MODIFY state BLOB NOT NULL");
+        } catch (SQLException e) {
+            throw new DataAccessException(500, String.format("Unable to migrate snapshots: %s", e.getMessage()));
+        }
+    }
+
 
     public String GameCodeGenerator() {
         String CHARACTERS = "ABCDEFGHJKLMNPQRSTUVWXYZ123456789";
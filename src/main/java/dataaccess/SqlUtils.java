@@ -1,6 +1,9 @@
 package dataaccess;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
@@ -29,21 +32,40 @@ public class SqlUtils {
 
     }
 
+    /**
+     * @return True if the table in the current database has the column
+     */
+    public static boolean columnExists(String table, String column) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            var query = "SELECT COUNT(*) FROM information_schema.columns "
+                    + "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+            try (var ps = conn.prepareStatement(query)) {
+                setParams(ps, table, column);
+                try (var rs = ps.executeQuery()) {
+                    return rs.next() && rs.getInt(1) > 0;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException(500, String.format("Unable to configure database: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Adds a column to a table created by an older version of the server.
+     * MySQL has no ADD COLUMN IF NOT EXISTS, so the schema is checked first.
+     *
+     * @param definition the column's type and options, such as "BOOLEAN NOT NULL DEFAULT FALSE"
+     */
+    public static void addColumnIfMissing(String table, String column, String definition) throws DataAccessException {
+        if (!columnExists(table, column)) {
+            executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
     public static int executeUpdate(String statement, Object... params) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             try (var ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
-                for (var i = 0; i < params.length; i++) {
-                    var param = params[i];
-                    if (param instanceof String p) {
-                        ps.setString(i + 1, p);
-                    }
-                    else if (param instanceof Integer p) {
-                        ps.setInt(i + 1, p);
-                    }
-                    else if (param == null) {
-                        ps.setNull(i + 1, NULL);
-                    }
-                }
+                setParams(ps, params);
                 ps.executeUpdate();
 
                 var rs = ps.getGeneratedKeys();
@@ -57,4 +79,53 @@ public class SqlUtils {
             throw new DataAccessException(500, String.format("unable to update database: %s, %s", statement, e.getMessage()));
         }
     }
+
+    /**
+     * Runs one statement on a connection the caller holds, such as inside a
+     * transaction
+     */
+    static void execute(Connection conn, String statement, Object... params) throws SQLException {
+        try (var ps = conn.prepareStatement(statement)) {
+            setParams(ps, params);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs one statement once per parameter list as a single JDBC batch on a
+     * connection the caller holds
+     */
+    static void executeBatch(Connection conn, String statement, List<Object[]> paramsList) throws SQLException {
+        if (paramsList.isEmpty()) {
+            return;
+        }
+        try (var ps = conn.prepareStatement(statement)) {
+            for (var params : paramsList) {
+                setParams(ps, params);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    static void setParams(PreparedStatement ps, Object... params) throws SQLException {
+        for (var i = 0; i < params.length; i++) {
+            var param = params[i];
+            if (param instanceof String p) {
+                ps.setString(i + 1, p);
+            }
+            else if (param instanceof Integer p) {
+                ps.setInt(i + 1, p);
+            }
+            else if (param instanceof Boolean p) {
+                ps.setBoolean(i + 1, p);
+            }
+            else if (param instanceof byte[] p) {
+                ps.setBytes(i + 1, p);
+            }
+            else if (param == null) {
+                ps.setNull(i + 1, NULL);
+            }
+        }
+    }
 }
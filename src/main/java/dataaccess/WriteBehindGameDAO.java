@@ -0,0 +1,288 @@
+package dataaccess;
+
+import data.GameData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the games being played in memory in front of another GameDAO.
+ * Reads of a resident room never touch the database, and updates only mark
+ * the room dirty; a background thread writes every dirty room in one batch
+ * each flush interval, so several moves in a room cost one write. A room
+ * nobody has touched for idleMillis is written if needed and dropped from
+ * memory. close writes whatever is left.
+ * <p>
+ * Every caller gets its own copy of the game, as it would from the database,
+ * so a move being tried on one thread is never seen by another until it is
+ * saved with updateGame. A copy read before another caller saved a move is
+ * refused, rather than undoing that move.
+ */
+public class WriteBehindGameDAO implements GameDAO, AutoCloseable {
+
+    private static final long DEFAULT_FLUSH_MILLIS = 3000;
+    private static final long DEFAULT_IDLE_MILLIS = 120_000;
+
+    private final GameDAO store;
+    private final long idleNanos;
+    private final Map<String, Entry> games = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    /*
+     * A resident room. The game held here is never handed out or changed in
+     * place; updates replace it, and version counts them so a flush can tell
+     * whether the room changed again while it was being written.
+     */
+    private static final class Entry {
+        GameData data;
+        boolean dirty;
+        long version;
+        long lastUsed;
+
+        Entry(GameData data, boolean dirty) {
+            this.data = data;
+            this.dirty = dirty;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    public WriteBehindGameDAO(GameDAO store) {
+        this(store, DEFAULT_FLUSH_MILLIS, DEFAULT_IDLE_MILLIS);
+    }
+
+    /**
+     * @param store       where games are kept for good
+     * @param flushMillis how often dirty rooms are written
+     * @param idleMillis  how long an untouched room stays in memory
+     */
+    public WriteBehindGameDAO(GameDAO store, long flushMillis, long idleMillis) {
+        this.store = store;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "game-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndEvict, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String createGame() throws DataAccessException {
+        return store.createGame();
+    }
+
+    @Override
+    public GameData getGame(String roomCode) throws DataAccessException {
+        var entry = games.get(roomCode);
+        if (entry != null) {
+            hits.increment();
+            synchronized (entry) {
+                entry.lastUsed = System.nanoTime();
+                return copy(entry.data);
+            }
+        }
+        misses.increment();
+        var loaded = store.getGame(roomCode);
+        if (loaded == null) {
+            return null;
+        }
+        // Another thread may have loaded or updated the room meanwhile
+        entry = games.computeIfAbsent(roomCode, key -> new Entry(copy(loaded), false));
+        synchronized (entry) {
+            return copy(entry.data);
+        }
+    }
+
+    /**
+     * Lists the stored games, with the seats of resident rooms taken from
+     * memory since they may not be written yet
+     */
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        var listed = new ArrayList<GameData>();
+        for (var gameData : store.listGames()) {
+            var entry = games.get(gameData.roomCode());
+            if (entry != null) {
+                synchronized (entry) {
+                    gameData = new GameData(gameData.roomCode(), entry.data.whiteUsername(),
+                            entry.data.blackUsername(), gameData.game());
+                }
+            }
+            listed.add(gameData);
+        }
+        return listed;
+    }
+
+    /**
+     * @throws DataAccessException with status 409 if the game is behind the
+     *                             one in memory, as when another caller saved
+     *                             a move since it was read
+     */
+    @Override
+    public void updateGame(GameData u) throws DataAccessException {
+        if (u.roomCode() == null) {
+            throw new DataAccessException(400, "Error: invalid request");
+        }
+        var saved = copy(u);
+        var stale = new boolean[1];
+        games.compute(u.roomCode(), (roomCode, entry) -> {
+            if (entry == null) {
+                return new Entry(saved, true);
+            }
+            synchronized (entry) {
+                if (plyOf(saved) < plyOf(entry.data)) {
+                    stale[0] = true;
+                    return entry;
+                }
+                entry.data = saved;
+                entry.dirty = true;
+                entry.version++;
+                entry.lastUsed = System.nanoTime();
+            }
+            return entry;
+        });
+        if (stale[0]) {
+            throw new DataAccessException(409, String.format(
+                    "Error: game %s changed since it was read, try again", u.roomCode()));
+        }
+    }
+
+    private static int plyOf(GameData gameData) {
+        return (gameData.game() == null) ? 0 : gameData.game().getPly();
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        games.clear();
+        store.clear();
+    }
+
+    /**
+     * Writes every dirty room to the store in one batch. If the store refuses
+     * the batch because a room is behind what another server saved, the rooms
+     * are written one at a time and the refused ones are dropped from memory,
+     * so the next read loads the stored game.
+     */
+    public void flush() throws DataAccessException {
+        var batch = new ArrayList<GameData>();
+        var entries = new ArrayList<Entry>();
+        var versions = new ArrayList<Long>();
+        for (var entry : games.values()) {
+            synchronized (entry) {
+                if (entry.dirty) {
+                    batch.add(entry.data);
+                    entries.add(entry);
+                    versions.add(entry.version);
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            store.updateGames(batch);
+        } catch (DataAccessException e) {
+            if (e.getStatus() != 409) {
+                throw e;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    store.updateGame(batch.get(i));
+                } catch (DataAccessException refused) {
+                    if (refused.getStatus() != 409) {
+                        throw refused;
+                    }
+                    games.remove(batch.get(i).roomCode(), entries.get(i));
+                    continue;
+                }
+                written(entries.get(i), versions.get(i));
+            }
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            written(entries.get(i), versions.get(i));
+        }
+    }
+
+    private void written(Entry entry, long version) {
+        writes.increment();
+        synchronized (entry) {
+            if (entry.version == version) {
+                entry.dirty = false;
+            }
+        }
+    }
+
+    /*
+     * Runs on the flusher thread. A failed write leaves the rooms dirty, so
+     * they are tried again next time and never evicted unwritten.
+     */
+    private void flushAndEvict() {
+        try {
+            flush();
+        } catch (DataAccessException | RuntimeException e) {
+            System.out.println("Game flush failed: " + e.getMessage());
+            return;
+        }
+        long now = System.nanoTime();
+        for (var roomCode : List.copyOf(games.keySet())) {
+            games.computeIfPresent(roomCode, (key, entry) -> {
+                synchronized (entry) {
+                    return (!entry.dirty && now - entry.lastUsed > idleNanos) ? null : entry;
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the background flush and writes every dirty room
+     */
+    @Override
+    public void close() throws DataAccessException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static GameData copy(GameData gameData) {
+        var game = (gameData.game() == null) ? null : gameData.game().copy();
+        return new GameData(gameData.roomCode(), gameData.whiteUsername(), gameData.blackUsername(), game);
+    }
+
+    /**
+     * @return how many rooms are held in memory
+     */
+    public int size() {
+        return games.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many room updates have been written to the store
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+}
@@ -0,0 +1,4 @@
+package requests;
+
+public record AnalysisRequest(String authToken, String roomCode, Integer depth, Long timeMillis) {
+}
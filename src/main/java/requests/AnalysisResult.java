@@ -0,0 +1,5 @@
+package requests;
+
+public record AnalysisResult(String fen, String bestMove, int score, boolean mate, int depth,
+                             String principalVariation, long nodes) {
+}
@@ -11,6 +11,7 @@ import server.websocket.WebSocketHandler;
 import service.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 
 public class Server {
@@ -19,9 +20,11 @@ public class Server {
 
     UserDAO userAccess;
     GameDAO gameAccess;
+    WriteBehindGameDAO gameStore;
     AuthDAO authAccess;
     UserService userService;
     GameService gameService;
+    AnalysisService analysisService;
     Gson serializer = new Gson();
     WebSocketHandler webSocketHandler;
     String serverUrl = "https://custom-chess-server.onrender.com";
@@ -29,8 +32,9 @@ public class Server {
     public Server() {
         try {
             userAccess = new UserSqlAccess();
-            gameAccess = new GameSqlAccess();
-            authAccess = new AuthSqlAccess();
+            gameStore = new WriteBehindGameDAO(new GameSqlAccess());
+            gameAccess = gameStore;
+            authAccess = new CachingAuthDAO(new AuthSqlAccess());
             webSocketHandler = new WebSocketHandler(userAccess, gameAccess, authAccess);
         }  catch (DataAccessException e) {
             throw new RuntimeException(e);
@@ -42,6 +46,10 @@ public class Server {
 
         this.userService = new UserService(userAccess, authAccess);
         this.gameService = new GameService(gameAccess, authAccess);
+        this.analysisService = new AnalysisService(gameAccess, authAccess);
+
+        // Games waiting to be written are saved when the process is told to stop
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushGames, "game-flush-on-exit"));
 
         javalin = Javalin.create(config -> config.staticFiles.add("web"));
         // Register your endpoints and exception handlers here.
@@ -53,6 +61,7 @@ public class Server {
                 .get("/awake", this::awake)
                 .post("/game", this::createGame)
                 .put("/game", this::joinGame)
+                .get("/game/{roomCode}/analysis", this::analysis)
                 .exception(Exception.class, this::exceptionHandler)
                 .ws("/ws", ws -> {
                     ws.onConnect(webSocketHandler);
@@ -69,6 +78,16 @@ public class Server {
 
     public void stop() {
         javalin.stop();
+        flushGames();
+        DatabaseManager.closePool();
+    }
+
+    private void flushGames() {
+        try {
+            gameStore.close();
+        } catch (DataAccessException e) {
+            System.out.println("Unable to save games: " + e.getMessage());
+        }
     }
 
     private void register(Context context) {
@@ -92,6 +111,7 @@ public class Server {
         try {
             userService.clear();
             gameService.clear();
+            analysisService.clear();
             context.json("{ }");
         } catch (DataAccessException ex) {
             errorHandling(ex, context);
@@ -189,6 +209,34 @@ public class Server {
         }
     }
 
+    private void analysis(Context context) {
+        try {
+            String authToken = context.header("authToken");
+            if (authToken == null) {
+                authToken = context.cookie("authToken");
+            }
+            var analysisRequest = new AnalysisRequest(authToken, context.pathParam("roomCode"),
+                    context.queryParamAsClass("depth", Integer.class).allowNullable().get(),
+                    context.queryParamAsClass("timeMillis", Long.class).allowNullable().get());
+            var analysis = analysisService.analyze(analysisRequest);
+            // Answered when the search ends, without holding a request thread
+            context.future(() -> analysis.handle((analysisResult, error) -> {
+                var cause = (error instanceof CompletionException) ? error.getCause() : error;
+                if (cause == null) {
+                    context.json(serializer.toJson(analysisResult));
+                } else if (cause instanceof DataAccessException ex) {
+                    errorHandling(ex, context);
+                } else {
+                    exceptionHandler(new RuntimeException(cause), context);
+                }
+                return null;
+            }));
+        }
+        catch (DataAccessException ex) {
+            errorHandling(ex, context);
+        }
+    }
+
     private void exceptionHandler(Exception e, Context context) {
         var body = new Gson().toJson(Map.of("message", String.format("Error: %s", e.getMessage()), "success", false));
         context.status(500);
@@ -3,6 +3,11 @@ package server.websocket;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
+import chess.PackedMove;
+import chess.engine.OpeningBook;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
 import com.google.gson.Gson;
 import data.*;
 import dataaccess.*;
@@ -19,7 +24,12 @@ import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
 
@@ -29,11 +39,46 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
     private final AuthDAO authAccess;
     private final Random random = new Random();
 
+    private static final String BOT_NAME = "Computer";
+    private static final int MAX_BOT_DEPTH = 20;
+    private static final long DEFAULT_BOT_MILLIS = 1000;
+    private static final long MAX_BOT_MILLIS = 10000;
+
+    /*
+     * Bots are not users (the game table's seats reference the user table), so
+     * a room's bot seat lives here. Searches run on their own daemon threads,
+     * never on Javalin's, and at most one per core pair runs at a time.
+     */
+    private final Map<String, BotSeat> bots = new ConcurrentHashMap<>();
+    private final ExecutorService botExecutor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                var thread = new Thread(runnable, "chess-bot");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private record BotSeat(ChessGame.TeamColor color, SearchLimits limits) {
+    }
+
+    /*
+     * Commands read a room's game, change it and save it. Every command for a
+     * room, and every bot move, runs under that room's lock so one cannot
+     * overwrite another that landed in between. Rooms share a fixed set of
+     * locks, so nothing is kept per room.
+     */
+    private final Object[] roomLocks = new Object[64];
 
     public WebSocketHandler(UserDAO userAccess, GameDAO gameAccess, AuthDAO authAccess) {
         this.userAccess = userAccess;
         this.gameAccess = gameAccess;
         this.authAccess = authAccess;
+        for (int i = 0; i < roomLocks.length; i++) {
+            roomLocks[i] = new Object();
+        }
+    }
+
+    private Object roomLock(String roomCode) {
+        return roomLocks[Math.floorMod(Objects.hashCode(roomCode), roomLocks.length)];
     }
 
     @Override
@@ -47,14 +92,18 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         try {
             UserGameCommand action = new Gson().fromJson(ctx.message(), UserGameCommand.class);
             System.out.println("WS recieved: " + ctx.message());
-            switch (action.getCommandType()) {
-                case CONNECT -> connect(action.getAuthToken(), action.getRoomCode(), ctx.session);
-                case RELOAD -> connect(action.getAuthToken(), action.getRoomCode(), ctx.session);
-                case MAKE_MOVE -> makeMove(new Gson().fromJson(ctx.message(), UserGameCommand.class), ctx.session);
-                case LEAVE -> leave(action.getAuthToken(), action.getRoomCode(), ctx.session);
-                case RESIGN -> resign(action.getAuthToken(), action.getRoomCode(), ctx.session);
-                default -> connections.messageRoot(ctx.session,
-                        new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Invalid Command"));
+            synchronized (roomLock(action.getRoomCode())) {
+                switch (action.getCommandType()) {
+                    case CONNECT -> connect(action.getAuthToken(), action.getRoomCode(), ctx.session);
+                    case RELOAD -> connect(action.getAuthToken(), action.getRoomCode(), ctx.session);
+                    case MAKE_MOVE -> makeMove(new Gson().fromJson(ctx.message(), UserGameCommand.class), ctx.session);
+                    case LEAVE -> leave(action.getAuthToken(), action.getRoomCode(), ctx.session);
+                    case RESIGN -> resign(action.getAuthToken(), action.getRoomCode(), ctx.session);
+                    case ADD_BOT -> addBot(action, ctx.session);
+                    case LEGAL_MOVES -> sendLegalMoves(action.getAuthToken(), action.getRoomCode(), ctx.session);
+                    default -> connections.messageRoot(ctx.session,
+                            new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Invalid Command"));
+                }
             }
         } catch (Exception e) {
             System.out.println("WS failed on: " + ctx.message() + ". Message: " + e);
@@ -93,8 +142,8 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
                 message = String.format("%s connected as Black Player", authData.username());
             } else {
                 var usernames = new ArrayList<String>();
-                usernames.add(gameData.whiteUsername());
-                usernames.add(gameData.blackUsername());
+                usernames.add(playerName(gameData, ChessGame.TeamColor.WHITE));
+                usernames.add(playerName(gameData, ChessGame.TeamColor.BLACK));
                 int i = random.nextInt(2);
                 if (usernames.get(i) == null) {
                     message = updateGames(i, gameData, authData, session);
@@ -113,6 +162,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         }
         var loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game().toFen());
         connections.messageRoot(session, loadGame);
+        connections.messageRoot(session, legalMovesMessage(gameData.game()));
         var notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
         connections.broadcast(authToken, roomCode, notification);
     }
@@ -150,10 +200,10 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
                 return;
             }
             if (gameData.whiteUsername() != null && gameData.whiteUsername().equals(authData.username())) {
-                gameAccess.updateGame(new GameData(null, gameData.blackUsername(), gameData.roomCode(), gameData.game()));
+                gameAccess.updateGame(new GameData(gameData.roomCode(), null, gameData.blackUsername(), gameData.game()));
             }
             if (gameData.blackUsername() != null &&gameData.blackUsername().equals(authData.username())) {
-                gameAccess.updateGame(new GameData(gameData.whiteUsername(), null, gameData.roomCode(), gameData.game()));
+                gameAccess.updateGame(new GameData(gameData.roomCode(), gameData.whiteUsername(), null, gameData.game()));
             }
         } catch (DataAccessException e) {
             var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Bad Request");
@@ -208,17 +258,25 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
                 return;
             }
             game.makeMove(move);
+            // Worked out before saving, so the stored game carries the list
+            var moves = legalMovesMessage(game);
             gameAccess.updateGame(gameData);
             message = String.format("%s moved %s to %s", username, move.getStartPosition(), move.getEndPosition());
             var loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game().toFen());
             connections.messageRoot(session, loadGame);
             connections.broadcast(moveCommand.getAuthToken(), moveCommand.getRoomCode(), loadGame);
+            connections.messageRoot(session, moves);
+            connections.broadcast(moveCommand.getAuthToken(), moveCommand.getRoomCode(), moves);
             String checkMessage = checkMessages(game, gameData);
             if (checkMessage != null) {
                 ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, checkMessage);
                 connections.messageRoot(session, notification);
                 connections.broadcast(moveCommand.getAuthToken(), moveCommand.getRoomCode(), notification);
             }
+            var bot = bots.get(moveCommand.getRoomCode());
+            if (bot != null && !game.gameOver && game.getTeamTurn() == bot.color()) {
+                scheduleBotMove(moveCommand.getRoomCode());
+            }
         } catch (DataAccessException e) {
             var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Invalid Move");
             connections.messageRoot(session, error);
@@ -257,28 +315,208 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         connections.messageRoot(session, loadGame);
     }
 
-    private String checkMessages(ChessGame game, GameData gameData) {
-        if (game.isInStalemate(ChessGame.TeamColor.WHITE)) {
-            return "Game ends in Stalemate";
+    private void sendLegalMoves(String authToken, String roomCode, Session session) throws IOException {
+        GameData gameData;
+        try {
+            if (authAccess.getAuth(authToken) == null) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Bad Request");
+                connections.messageRoot(session, error);
+                return;
+            }
+            gameData = gameAccess.getGame(roomCode);
+            if (gameData == null) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "No Such Game");
+                connections.messageRoot(session, error);
+                return;
+            }
+        } catch (DataAccessException e) {
+            var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Bad Request");
+            connections.messageRoot(session, error);
+            return;
         }
-        if (game.isInStalemate(ChessGame.TeamColor.BLACK)) {
-            return "Game ends in Stalemate";
+        connections.messageRoot(session, legalMovesMessage(gameData.game()));
+    }
+
+    /*
+     * The legal moves for the team to move, kept with the game until the
+     * position changes. A finished game has none.
+     */
+    private ServerMessage legalMovesMessage(ChessGame game) {
+        var packed = game.gameOver ? "" : game.packedLegalMoves();
+        return new ServerMessage(ServerMessage.ServerMessageType.LEGAL_MOVES, packed);
+    }
+
+    private String checkMessages(ChessGame game, GameData gameData) {
+        String username = playerName(gameData, game.getTeamTurn());
+        return switch (game.getStatus()) {
+            case STALEMATE -> "Game ends in Stalemate";
+            case THREEFOLD_REPETITION -> "Game ends in a draw by threefold repetition";
+            case FIFTY_MOVE_RULE -> "Game ends in a draw by the fifty-move rule";
+            case CHECKMATE -> String.format("%s is in checkmate", username);
+            case CHECK -> String.format("%s is in check", username);
+            case ONGOING -> null;
+        };
+    }
+
+    private static String seatUsername(GameData gameData, ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.WHITE) ? gameData.whiteUsername() : gameData.blackUsername();
+    }
+
+    private String playerName(GameData gameData, ChessGame.TeamColor color) {
+        var bot = bots.get(gameData.roomCode());
+        if (bot != null && bot.color() == color) {
+            return BOT_NAME;
         }
-        if (game.isInCheckmate(ChessGame.TeamColor.WHITE)) {
-            return String.format("%s is in checkmate", gameData.whiteUsername());
+        return seatUsername(gameData, color);
+    }
+
+    private void addBot(UserGameCommand command, Session session) throws IOException {
+        String roomCode = command.getRoomCode();
+        String message;
+        BotSeat seat;
+        try {
+            var authData = authAccess.getAuth(command.getAuthToken());
+            if (authData == null) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Bad Request");
+                connections.messageRoot(session, error);
+                return;
+            }
+            var gameData = gameAccess.getGame(roomCode);
+            if (gameData == null) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "No Such Game");
+                connections.messageRoot(session, error);
+                return;
+            }
+            if (!authData.username().equals(gameData.whiteUsername()) && !authData.username().equals(gameData.blackUsername())) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Can't add a bot");
+                connections.messageRoot(session, error);
+                return;
+            }
+            if (gameData.game().gameOver) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Game is Finished");
+                connections.messageRoot(session, error);
+                return;
+            }
+            ChessGame.TeamColor color;
+            if (gameData.blackUsername() == null) {
+                color = ChessGame.TeamColor.BLACK;
+            } else if (gameData.whiteUsername() == null) {
+                color = ChessGame.TeamColor.WHITE;
+            } else {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "No Open Seat");
+                connections.messageRoot(session, error);
+                return;
+            }
+            seat = new BotSeat(color, botLimits(command));
+            if (bots.putIfAbsent(roomCode, seat) != null) {
+                var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Room already has a bot");
+                connections.messageRoot(session, error);
+                return;
+            }
+            message = String.format("%s connected as %s Player", BOT_NAME,
+                    (color == ChessGame.TeamColor.WHITE) ? "White" : "Black");
+            if (gameData.game().getTeamTurn() == color) {
+                scheduleBotMove(roomCode);
+            }
+        } catch (DataAccessException e) {
+            var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, "Bad Request");
+            connections.messageRoot(session, error);
+            return;
         }
-        if (game.isInCheckmate(ChessGame.TeamColor.BLACK)) {
-            return String.format("%s is in checkmate", gameData.blackUsername());
+        var notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
+        connections.messageRoot(session, notification);
+        connections.broadcast(command.getAuthToken(), roomCode, notification);
+    }
+
+    /*
+     * A depth on its own is still held to the maximum time budget, so a deep
+     * request cannot tie up a bot thread indefinitely.
+     */
+    private static SearchLimits botLimits(UserGameCommand command) {
+        int depth = (command.getDepth() != null) ? Math.max(1, Math.min(command.getDepth(), MAX_BOT_DEPTH)) : 0;
+        long timeMillis;
+        if (command.getTimeMillis() != null) {
+            timeMillis = Math.max(1, Math.min(command.getTimeMillis(), MAX_BOT_MILLIS));
+        } else {
+            timeMillis = (depth > 0) ? MAX_BOT_MILLIS : DEFAULT_BOT_MILLIS;
         }
-        if (game.isInCheck(ChessGame.TeamColor.WHITE)) {
-            return String.format("%s is in check", gameData.whiteUsername());
+        return new SearchLimits(depth, timeMillis);
+    }
+
+    private void scheduleBotMove(String roomCode) {
+        botExecutor.execute(() -> playBotMove(roomCode));
+    }
+
+    private void playBotMove(String roomCode) {
+        var seat = bots.get(roomCode);
+        if (seat == null) {
+            return;
         }
-        if (game.isInCheck(ChessGame.TeamColor.BLACK)) {
-            return String.format("%s is in check", gameData.blackUsername());
+        synchronized (seat) {
+            try {
+                var gameData = gameAccess.getGame(roomCode);
+                if (gameData == null || gameData.game().gameOver) {
+                    bots.remove(roomCode);
+                    return;
+                }
+                if (seatUsername(gameData, seat.color()) != null) {
+                    // A player took the seat through joinGame
+                    bots.remove(roomCode);
+                    return;
+                }
+                var game = gameData.game();
+                if (game.getTeamTurn() != seat.color()) {
+                    return;
+                }
+                ChessMove move;
+                int bookMove = OpeningBook.shared().pick(game, random);
+                if (bookMove != SearchResult.NO_MOVE) {
+                    move = PackedMove.toChessMove(bookMove);
+                } else {
+                    move = new Search(game).search(seat.limits()).move();
+                }
+                if (move == null) {
+                    return;
+                }
+                saveBotMove(roomCode, seat, game, move);
+            } catch (DataAccessException | InvalidMoveException | IOException e) {
+                System.out.println("Bot failed in room " + roomCode + ". Message: " + e);
+            }
         }
-        return null;
     }
 
+    /*
+     * Plays the bot's move under the room's lock, unless the game was resigned,
+     * moved or its seat taken while the bot was thinking. The search itself runs
+     * outside the lock so players are not kept waiting on it.
+     */
+    private void saveBotMove(String roomCode, BotSeat seat, ChessGame searched, ChessMove move)
+            throws DataAccessException, InvalidMoveException, IOException {
+        synchronized (roomLock(roomCode)) {
+            var current = gameAccess.getGame(roomCode);
+            if (current == null || current.game().gameOver || !current.game().toFen().equals(searched.toFen())
+                    || bots.get(roomCode) != seat || seatUsername(current, seat.color()) != null) {
+                return;
+            }
+            current.game().makeMove(move);
+            var moves = legalMovesMessage(current.game());
+            gameAccess.updateGame(current);
+            var loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, current.game().toFen());
+            connections.broadcast(null, roomCode, loadGame);
+            connections.broadcast(null, roomCode, moves);
+            var notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    String.format("%s moved %s to %s", BOT_NAME, move.getStartPosition(), move.getEndPosition()));
+            connections.broadcast(null, roomCode, notification);
+            String checkMessage = checkMessages(current.game(), current);
+            if (checkMessage != null) {
+                connections.broadcast(null, roomCode,
+                        new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, checkMessage));
+            }
+            if (current.game().gameOver) {
+                bots.remove(roomCode);
+            }
+        }
+    }
 
     private void resign(String authToken, String RoomCode, Session session) throws IOException {
         String message;
@@ -305,6 +543,9 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             }
             gameData.game().gameOver = true;
             gameAccess.updateGame(gameData);
+            var moves = legalMovesMessage(gameData.game());
+            connections.messageRoot(session, moves);
+            connections.broadcast(authToken, RoomCode, moves);
             var loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game().toFen());
 //            connections.messageRoot(session, loadGame);
 //            connections.broadcast(authToken, gameID, loadGame);
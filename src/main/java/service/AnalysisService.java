@@ -0,0 +1,170 @@
+package service;
+
+import chess.PackedMove;
+import chess.engine.ParallelSearch;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import dataaccess.*;
+import requests.AnalysisRequest;
+import requests.AnalysisResult;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the engine on a room's current position. Analyses run on a small pool
+ * of their own with a bounded queue, so a burst of requests is turned away
+ * with a 503 instead of tying up the threads that serve logins and moves.
+ * Every request has a time limit; when it runs out the search is stopped,
+ * whether it is running or still waiting in the queue, so the worker is
+ * freed for the next request. Results are cached by FEN, so a result is
+ * only reused for the same position with the same move counters.
+ */
+public class AnalysisService {
+
+    private static final long DEFAULT_MILLIS = 1000;
+    private static final long MAX_MILLIS = 5000;
+    private static final int MAX_DEPTH = 30;
+    private static final int CACHE_SIZE = 1024;
+
+    private final GameDAO gameAccess;
+    private final AuthDAO authAccess;
+    private final ThreadPoolExecutor executor;
+    private final int threadsPerAnalysis;
+
+    private record CachedAnalysis(AnalysisResult result, SearchLimits limits) {
+    }
+
+    private final Map<String, CachedAnalysis> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedAnalysis> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    public AnalysisService(GameDAO gameAccess, AuthDAO authAccess) {
+        this(gameAccess, authAccess, 2, 8, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * @param workers            how many analyses may run at once
+     * @param queueLimit         how many more may wait before requests are refused
+     * @param threadsPerAnalysis search threads each analysis may use
+     */
+    public AnalysisService(GameDAO gameAccess, AuthDAO authAccess, int workers, int queueLimit, int threadsPerAnalysis) {
+        this.gameAccess = gameAccess;
+        this.authAccess = authAccess;
+        this.threadsPerAnalysis = threadsPerAnalysis;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    var thread = new Thread(runnable, "chess-analysis");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Checks the request and starts the analysis. The caller's thread does
+     * not wait for the search; the returned future completes when it ends.
+     *
+     * @return the analysis when it is done; it fails with a
+     * DataAccessException (503) if the search ran out of time
+     * @throws DataAccessException if the request is invalid or the analysis
+     *                             queue is full
+     */
+    public CompletableFuture<AnalysisResult> analyze(AnalysisRequest request) throws DataAccessException {
+        if (request.authToken() == null || request.roomCode() == null) {
+            throw new DataAccessException(400, "Error: invalid request");
+        }
+        if (authAccess.getAuth(request.authToken()) == null) {
+            throw new DataAccessException(401, "Error: unauthorized");
+        }
+        var gameData = gameAccess.getGame(request.roomCode());
+        if (gameData == null) {
+            throw new DataAccessException(400, "Error: no such gameID");
+        }
+        var game = gameData.game();
+        var limits = limits(request);
+
+        var key = game.toFen();
+        var cached = cache.get(key);
+        if (cached != null && covers(cached, limits)) {
+            return CompletableFuture.completedFuture(cached.result());
+        }
+
+        var started = new AtomicBoolean(false);
+        var handle = new ParallelSearch.Handle();
+        var search = new CompletableFuture<SearchResult>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                started.set(true);
+                try {
+                    search.complete(ParallelSearch.search(game, limits, threadsPerAnalysis,
+                            TranspositionTable.shared(), depth -> { }, handle));
+                } catch (RuntimeException e) {
+                    search.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new DataAccessException(503, "Error: analysis is busy, try again later");
+        }
+
+        // The search stops itself at its own deadline; the extra second
+        // covers the wait in the queue and a final slow node
+        return search.orTimeout(limits.timeMillis() + 1000, TimeUnit.MILLISECONDS).handle((result, error) -> {
+            if (error instanceof TimeoutException) {
+                // The search never looks at its thread's interrupt flag
+                handle.stop();
+                task.cancel(false);
+                throw new CompletionException(new DataAccessException(503, started.get()
+                        ? "Error: analysis timed out" : "Error: analysis is busy, try again later"));
+            }
+            if (error != null) {
+                throw new CompletionException(new DataAccessException(500, "Error: " + error.getMessage()));
+            }
+            var bestMove = (result.bestMove() == SearchResult.NO_MOVE) ? null : PackedMove.toUci(result.bestMove());
+            var analysis = new AnalysisResult(key, bestMove, result.score(), result.isMate(),
+                    result.depth(), result.principalVariationUci(), result.nodes());
+            cache.put(key, new CachedAnalysis(analysis, limits));
+            return analysis;
+        });
+    }
+
+    /*
+     * A depth on its own is still held to the maximum time, so no request can
+     * keep a worker busy for longer than MAX_MILLIS.
+     */
+    private static SearchLimits limits(AnalysisRequest request) {
+        int depth = (request.depth() != null) ? Math.max(1, Math.min(request.depth(), MAX_DEPTH)) : 0;
+        long timeMillis;
+        if (request.timeMillis() != null) {
+            timeMillis = Math.max(1, Math.min(request.timeMillis(), MAX_MILLIS));
+        } else {
+            timeMillis = (depth > 0) ? MAX_MILLIS : DEFAULT_MILLIS;
+        }
+        return new SearchLimits(depth, timeMillis);
+    }
+
+    /*
+     * A cached analysis answers a request for a depth when it actually
+     * reached that depth, however it was limited. A request for time alone is
+     * answered by an analysis that was also limited by time alone, with at
+     * least as long a budget.
+     */
+    private static boolean covers(CachedAnalysis cached, SearchLimits wanted) {
+        if (wanted.depth() > 0) {
+            return cached.result().depth() >= wanted.depth();
+        }
+        return cached.limits().depth() == 0 && wanted.timeMillis() <= cached.limits().timeMillis();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -20,6 +20,10 @@ public class UserGameCommand {
 
     private String move = null;
 
+    private Integer depth = null;
+
+    private Long timeMillis = null;
+
     public UserGameCommand(CommandType commandType, String authToken, String roomCode) {
         this.commandType = commandType;
         this.authToken = authToken;
@@ -40,12 +44,26 @@ public class UserGameCommand {
         this.move = move;
     }
 
+    /**
+     * Seats a computer player in the room's open seat. Either limit may be
+     * left null; with neither set the server picks a time budget.
+     */
+    public UserGameCommand(CommandType commandType, String authToken, String roomCode, Integer depth, Long timeMillis) {
+        this.commandType = commandType;
+        this.authToken = authToken;
+        this.roomCode = roomCode;
+        this.depth = depth;
+        this.timeMillis = timeMillis;
+    }
+
     public enum CommandType {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
         RESIGN,
-        RELOAD
+        RELOAD,
+        ADD_BOT,
+        LEGAL_MOVES
     }
 
     public CommandType getCommandType() {
@@ -64,6 +82,21 @@ public class UserGameCommand {
         return new ChessMove(move);
     }
 
+    /**
+     * @return how many plies a bot may search, or null for no depth limit
+     */
+    public Integer getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return how long a bot may think per move in milliseconds, or null for
+     * the server default
+     */
+    public Long getTimeMillis() {
+        return timeMillis;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
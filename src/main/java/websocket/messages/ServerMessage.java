@@ -15,12 +15,14 @@ public class ServerMessage {
     private String message = null;
     private String game = null;
     private String errorMessage = null;
+    private String moves = null;
 
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
         NOTIFICATION,
-        COLOR
+        COLOR,
+        LEGAL_MOVES
     }
 
     public ServerMessage(ServerMessageType type, String message) {
@@ -31,6 +33,9 @@ public class ServerMessage {
         else if (type.equals(ServerMessageType.LOAD_GAME)) {
             this.game = message;
         }
+        else if (type.equals(ServerMessageType.LEGAL_MOVES)) {
+            this.moves = message;
+        }
         else {
             this.message = message;
         }
@@ -46,6 +51,15 @@ public class ServerMessage {
         return game;
     }
 
+    /**
+     * @return the legal moves for the team to move, packed by PackedMove.pack:
+     * two bytes per move (start square in bits 0-5, end square in bits 6-11,
+     * promotion in bits 12-14), base64 encoded
+     */
+    public String getMoves() {
+        return moves;
+    }
+
     public ServerMessageType getServerMessageType() {
         return this.serverMessageType;
     }
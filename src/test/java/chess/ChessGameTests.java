@@ -0,0 +1,257 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class ChessGameTests {
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (var move : moves) {
+            game.makeMove(new ChessMove(move));
+        }
+    }
+
+    @Test
+    @DisplayName("Transpositions share a Zobrist key")
+    public void zobristTransposition() throws InvalidMoveException {
+        var first = new ChessGame();
+        play(first, "g1 f3", "g8 f6", "b1 c3", "b8 c6");
+        var second = new ChessGame();
+        play(second, "b1 c3", "b8 c6", "g1 f3", "g8 f6");
+        Assertions.assertEquals(first.getZobristKey(), second.getZobristKey());
+
+        var third = new ChessGame();
+        play(third, "g1 f3", "g8 f6", "b1 c3");
+        Assertions.assertNotEquals(first.getZobristKey(), third.getZobristKey(), "Side to move not hashed");
+    }
+
+    @Test
+    @DisplayName("Zobrist key survives apply, undo and Gson")
+    public void zobristRestored() throws InvalidMoveException {
+        var game = ChessGame.fromFen(PerftTests.KIWIPETE);
+        long key = game.getZobristKey();
+        for (var move : game.legalMoves()) {
+            game.applyMove(move);
+            Assertions.assertNotEquals(key, game.getZobristKey(), "Move did not change key: " + move);
+            game.undoMove();
+            Assertions.assertEquals(key, game.getZobristKey(), "Undo did not restore key: " + move);
+        }
+        play(game, "e1 g1");
+        var gson = new Gson();
+        var copy = gson.fromJson(gson.toJson(game), ChessGame.class);
+        Assertions.assertEquals(game.getZobristKey(), copy.getZobristKey());
+        Assertions.assertEquals(game, copy);
+    }
+
+    @Test
+    @DisplayName("Status is worked out by makeMove")
+    public void status() throws InvalidMoveException {
+        var game = new ChessGame();
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        play(game, "e2 e4", "f7 f6", "d2 d4", "g7 g5");
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getStatus());
+        play(game, "d1 h5");
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getStatus());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        Assertions.assertTrue(game.gameOver);
+
+        var check = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        play(check, "a1 a8");
+        Assertions.assertEquals(ChessGame.GameStatus.CHECK, check.getStatus());
+
+        var stalemate = ChessGame.fromFen("k7/8/8/1Q6/8/8/8/4K3 w - - 0 1");
+        play(stalemate, "b5 b6");
+        Assertions.assertEquals(ChessGame.GameStatus.STALEMATE, stalemate.getStatus());
+        Assertions.assertTrue(stalemate.gameOver);
+    }
+
+    @Test
+    @DisplayName("Pins are not carried over to a board without a king")
+    public void kinglessAfterPin() {
+        var game = ChessGame.fromFen("4k3/8/8/8/4r3/8/4R3/4K3 w - - 0 1");
+        var rook = new ChessPosition(2, 5);
+        Assertions.assertEquals(2, game.validMoves(rook).size());
+
+        var board = new ChessBoard();
+        board.addPiece(rook, new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        game.setBoard(board);
+        Assertions.assertEquals(14, game.validMoves(rook).size());
+    }
+
+    @Test
+    @DisplayName("Packed moves match ChessMove and carry flags")
+    public void packedMoves() {
+        var game = ChessGame.fromFen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        var moves = new MoveList();
+        game.legalMoves(moves);
+        Assertions.assertEquals(game.legalMoves().size(), moves.size());
+        Assertions.assertEquals(game.legalMoves(), moves.toChessMoves());
+
+        Assertions.assertTrue(moves.contains(PackedMove.fromUci("e5d6")));
+        Assertions.assertTrue(moves.contains(PackedMove.fromUci("b7a8n")));
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            var uci = PackedMove.toUci(move);
+            Assertions.assertEquals(PackedMove.withoutFlags(move), PackedMove.fromUci(uci));
+            Assertions.assertEquals(PackedMove.withoutFlags(move), PackedMove.encode(PackedMove.toChessMove(move)));
+            switch (uci) {
+                case "e5d6" -> Assertions.assertTrue(PackedMove.is(move, PackedMove.EN_PASSANT | PackedMove.CAPTURE));
+                case "e1g1", "e1c1" -> Assertions.assertTrue(PackedMove.is(move, PackedMove.CASTLE));
+                case "b7a8q", "a1a8" -> Assertions.assertTrue(PackedMove.is(move, PackedMove.CAPTURE));
+                case "b7b8q", "e5e6" -> Assertions.assertEquals(PackedMove.withoutFlags(move), move);
+                default -> { }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Moves made are logged with their ply")
+    public void moveLog() throws InvalidMoveException {
+        var game = ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 3");
+        Assertions.assertEquals(5, game.getPly());
+        for (var move : new String[]{"e7e5", "g1f3", "b8c6"}) {
+            game.makeMove(PackedMove.toChessMove(PackedMove.fromUci(move)));
+        }
+        Assertions.assertEquals(8, game.getPly());
+        var copy = game.copy();
+        copy.makeMove(PackedMove.toChessMove(PackedMove.fromUci("b1c3")));
+
+        var recent = game.getRecentMoves();
+        Assertions.assertEquals(3, recent.length);
+        Assertions.assertEquals("g1f3", PackedMove.toUci(recent[1]));
+        Assertions.assertEquals(4, copy.getRecentMoves().length);
+
+        var replayed = ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 3");
+        for (int move : recent) {
+            replayed.makeMove(PackedMove.toChessMove(move));
+        }
+        Assertions.assertEquals(game.toFen(), replayed.toFen());
+    }
+
+    @Test
+    @DisplayName("Binary form round-trips")
+    public void binary() throws InvalidMoveException {
+        Assertions.assertEquals(34, new ChessGame().toBytes().length);
+        for (var fen : new String[]{
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w Kq d6 0 1",
+                "8/8/8/4k3/8/8/8/4K2R b - - 37 80",
+        }) {
+            var game = ChessGame.fromFen(fen);
+            var decoded = ChessGame.fromBytes(game.toBytes());
+            Assertions.assertEquals(game.toFen(), decoded.toFen());
+            Assertions.assertEquals(game.getZobristKey(), decoded.getZobristKey());
+            Assertions.assertEquals(game.legalMoves(), decoded.legalMoves());
+        }
+
+        var game = new ChessGame();
+        for (var move : new String[]{"g1f3", "g8f6", "f3g1", "f6g8", "g1f3"}) {
+            game.makeMove(PackedMove.toChessMove(PackedMove.fromUci(move)));
+        }
+        game.gameOver = true;
+        var decoded = ChessGame.fromBytes(game.toBytes());
+        Assertions.assertEquals(game.toFen(), decoded.toFen());
+        Assertions.assertEquals(game.repetitions(), decoded.repetitions());
+        Assertions.assertTrue(decoded.gameOver);
+
+        Assertions.assertThrows(RuntimeException.class, () -> ChessGame.fromBytes(new byte[]{0x43, 9}));
+        Assertions.assertThrows(RuntimeException.class,
+                () -> ChessGame.fromBytes(Arrays.copyOf(new ChessGame().toBytes(), 20)));
+    }
+
+    @Test
+    @DisplayName("Move lists pack to two bytes a move")
+    public void packedMoveList() {
+        var game = ChessGame.fromFen("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        var moves = new MoveList();
+        game.legalMoves(moves);
+        var packed = PackedMove.pack(moves);
+        Assertions.assertEquals((moves.size() * 2 + 2) / 3 * 4, packed.length());
+
+        var unpacked = PackedMove.unpack(packed);
+        Assertions.assertEquals(moves.size(), unpacked.size());
+        for (int i = 0; i < moves.size(); i++) {
+            Assertions.assertEquals(PackedMove.withoutFlags(moves.get(i)), unpacked.get(i));
+        }
+        Assertions.assertTrue(PackedMove.unpack(PackedMove.pack(new MoveList())).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Packed legal moves are kept with the game until it moves")
+    public void packedLegalMoves() throws InvalidMoveException {
+        var game = new ChessGame();
+        var moves = new MoveList();
+        game.legalMoves(moves);
+        var packed = game.packedLegalMoves();
+        Assertions.assertEquals(PackedMove.pack(moves), packed);
+        Assertions.assertSame(packed, game.copy().packedLegalMoves());
+
+        play(game, "e2 e4");
+        game.legalMoves(moves);
+        Assertions.assertEquals(PackedMove.pack(moves), game.packedLegalMoves());
+    }
+
+    @Test
+    @DisplayName("Repetition and fifty-move draws end the game")
+    public void draws() throws InvalidMoveException {
+        var game = new ChessGame();
+        play(game, "g1 f3", "g8 f6", "f3 g1", "f6 g8", "g1 f3", "g8 f6", "f3 g1");
+        Assertions.assertEquals(1, game.repetitions());
+        Assertions.assertFalse(game.gameOver);
+        play(game, "f6 g8");
+        Assertions.assertEquals(2, game.repetitions());
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getStatus());
+        Assertions.assertTrue(game.gameOver);
+
+        var reset = new ChessGame();
+        play(reset, "g1 f3", "g8 f6", "f3 g1", "f6 g8", "e2 e4", "e7 e5",
+                "g1 f3", "g8 f6", "f3 g1", "f6 g8");
+        Assertions.assertEquals(1, reset.repetitions(), "Positions before the pawn moves counted");
+
+        var fifty = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 98 60");
+        play(fifty, "a1 a2");
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, fifty.getStatus());
+        play(fifty, "e8 d8");
+        Assertions.assertEquals(100, fifty.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.FIFTY_MOVE_RULE, fifty.getStatus());
+        Assertions.assertTrue(fifty.gameOver);
+
+        var mate = ChessGame.fromFen("k7/8/1K6/8/8/8/8/7R w - - 99 80");
+        play(mate, "h1 h8");
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, mate.getStatus());
+
+        var gson = new Gson();
+        var repeated = new ChessGame();
+        play(repeated, "g1 f3", "g8 f6", "f3 g1", "f6 g8");
+        var copy = gson.fromJson(gson.toJson(repeated), ChessGame.class);
+        play(copy, "g1 f3", "g8 f6", "f3 g1", "f6 g8");
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, copy.getStatus());
+    }
+
+    @Test
+    @DisplayName("Incremental evaluation matches a fresh board")
+    public void evaluation() {
+        Assertions.assertEquals(0, new ChessGame().getEvaluation());
+        var game = ChessGame.fromFen(PerftTests.POSITION_4);
+        int score = game.getEvaluation();
+        var replies = new MoveList();
+        for (var move : game.legalMoves()) {
+            game.applyMove(move);
+            Assertions.assertEquals(ChessGame.fromFen(game.toFen()).getEvaluation(), game.getEvaluation(), "After " + move);
+            game.legalMoves(replies);
+            for (int i = 0; i < replies.size(); i++) {
+                game.applyMove(replies.get(i));
+                Assertions.assertEquals(ChessGame.fromFen(game.toFen()).getEvaluation(), game.getEvaluation());
+                game.undoMove();
+            }
+            game.undoMove();
+            Assertions.assertEquals(score, game.getEvaluation(), "Undo did not restore score: " + move);
+        }
+        var black = ChessGame.fromFen("4k3/8/8/8/8/8/8/Q3K3 b - - 0 1");
+        Assertions.assertTrue(black.getEvaluation() < -800);
+    }
+}
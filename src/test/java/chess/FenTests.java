@@ -1,5 +1,6 @@
 package chess;
 
+import com.google.gson.Gson;
 import dataaccess.DataAccessException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -16,6 +17,74 @@ public class FenTests {
     @DisplayName("Fen Test")
     public void Fen() throws DataAccessException {
         var game = new ChessGame();
-        System.out.println(game.toFen());
+        Assertions.assertEquals(PerftTests.START, game.toFen());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Fen Round Trip")
+    public void fenRoundTrip() {
+        for (var fen : new String[]{PerftTests.START, PerftTests.KIWIPETE, PerftTests.POSITION_3,
+                PerftTests.POSITION_4, PerftTests.POSITION_5, PerftTests.POSITION_6,
+                "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3"}) {
+            Assertions.assertEquals(fen, ChessGame.fromFen(fen).toFen());
+        }
+        Assertions.assertEquals(new ChessGame(), ChessGame.fromFen(PerftTests.START));
+        Assertions.assertEquals("8/8/8/8/8/8/8/K6k w - - 0 1", ChessGame.fromFen("8/8/8/8/8/8/8/K6k w - -").toFen());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Fen Counters And En Passant")
+    public void fenCounters() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove("e2 e4"));
+        Assertions.assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", game.toFen());
+        game.makeMove(new ChessMove("g8 f6"));
+        game.makeMove(new ChessMove("g1 f3"));
+        Assertions.assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 2 2", game.toFen());
+        game.makeMove(new ChessMove("f6 e4"));
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        Assertions.assertEquals(3, game.getFullmoveNumber());
+
+        game.applyMove(new ChessMove("f1 c4"));
+        game.undoMove();
+        Assertions.assertEquals("rnbqkb1r/pppppppp/8/8/4n3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 3", game.toFen());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Invalid Fen")
+    public void invalidFen() {
+        for (var fen : new String[]{"", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkz - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - x 1",
+                "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"}) {
+            Assertions.assertThrows(RuntimeException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Cached Fen Follows Moves")
+    public void cachedFen() throws InvalidMoveException {
+        var gson = new Gson();
+        var game = ChessGame.fromFen(PerftTests.KIWIPETE);
+        var fen = game.toFen();
+        Assertions.assertSame(fen, game.toFen());
+        for (var move : game.legalMoves()) {
+            game.applyMove(move);
+            var fresh = gson.fromJson(gson.toJson(game), ChessGame.class);
+            Assertions.assertEquals(fresh.toFen(), game.toFen(), "After " + move);
+            game.undoMove();
+            Assertions.assertEquals(fen, game.toFen(), "After undoing " + move);
+        }
+        game.makeMove(new ChessMove("e1 c1"));
+        Assertions.assertEquals("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/2KR3R b kq - 1 1", game.toFen());
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        Assertions.assertEquals("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/2KR3R w kq - 1 1", game.toFen());
     }
 }
@@ -0,0 +1,34 @@
+package chess;
+
+/**
+ * Move path enumeration: counts the leaf nodes of the legal move tree to a
+ * fixed depth, which can be checked against well known reference counts.
+ */
+public class Perft {
+
+    public static long perft(ChessGame game, int depth) {
+        var lists = new MoveList[Math.max(depth, 1)];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList();
+        }
+        return perft(game, depth, lists);
+    }
+
+    private static long perft(ChessGame game, int depth, MoveList[] lists) {
+        if (depth == 0) {
+            return 1;
+        }
+        var moves = lists[depth - 1];
+        game.legalMoves(moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.applyMove(moves.get(i));
+            nodes += perft(game, depth - 1, lists);
+            game.undoMove();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,59 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class PerftTests {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    public static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    public static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    public static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+    public static final String POSITION_6 = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+
+    @ParameterizedTest(name = "{0} depth {1}")
+    @DisplayName("Perft reference counts")
+    @CsvSource({
+            "START, 1, 20",
+            "START, 2, 400",
+            "START, 3, 8902",
+            "START, 4, 197281",
+            "KIWIPETE, 1, 48",
+            "KIWIPETE, 2, 2039",
+            "KIWIPETE, 3, 97862",
+            "POSITION_3, 1, 14",
+            "POSITION_3, 2, 191",
+            "POSITION_3, 3, 2812",
+            "POSITION_3, 4, 43238",
+            "POSITION_3, 5, 674624",
+            "POSITION_4, 1, 6",
+            "POSITION_4, 2, 264",
+            "POSITION_4, 3, 9467",
+            "POSITION_5, 1, 44",
+            "POSITION_5, 2, 1486",
+            "POSITION_5, 3, 62379",
+            "POSITION_6, 1, 46",
+            "POSITION_6, 2, 2079",
+            "POSITION_6, 3, 89890",
+    })
+    public void perft(String position, int depth, long nodes) {
+        var game = ChessGame.fromFen(fen(position));
+        var before = game.toFen();
+        Assertions.assertEquals(nodes, Perft.perft(game, depth), "Wrong node count");
+        Assertions.assertEquals(before, game.toFen(), "Position not restored after perft");
+    }
+
+    private static String fen(String position) {
+        return switch (position) {
+            case "START" -> START;
+            case "KIWIPETE" -> KIWIPETE;
+            case "POSITION_3" -> POSITION_3;
+            case "POSITION_4" -> POSITION_4;
+            case "POSITION_5" -> POSITION_5;
+            default -> POSITION_6;
+        };
+    }
+}
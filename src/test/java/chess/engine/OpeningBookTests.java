@@ -0,0 +1,92 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.PackedMove;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class OpeningBookTests {
+
+    private static final String PGN = """
+            [Event "Casual"]
+            [White "a"]
+            [Black "b"]
+
+            1. e4 e5 2. Nf3 {main line} Nc6 (2... d6 3. d4) 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 1-0
+
+            [Event "Casual"]
+
+            1.e4 c5 2.Nf3 d6 3.d4 cxd4 4.Nxd4 Nf6 5.Nc3 a6 $1 1/2-1/2
+
+            [FEN "4k3/1P6/8/8/8/8/8/4K3 w - - 0 1"]
+
+            1. b8=Q+ Kd7 *
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Reads standard algebraic notation")
+    public void san() {
+        var game = ChessGame.fromFen("r3k2r/1P6/8/3pP3/8/2N3N1/8/R3K2R w KQkq d6 0 1");
+        Assertions.assertEquals("e5d6", PackedMove.toUci(OpeningBookBuilder.fromSan(game, "exd6")));
+        Assertions.assertEquals("b7a8n", PackedMove.toUci(OpeningBookBuilder.fromSan(game, "bxa8=N+")));
+        Assertions.assertEquals("b7b8q", PackedMove.toUci(OpeningBookBuilder.fromSan(game, "b8Q")));
+        Assertions.assertEquals("e1c1", PackedMove.toUci(OpeningBookBuilder.fromSan(game, "O-O-O")));
+        Assertions.assertEquals("c3e4", PackedMove.toUci(OpeningBookBuilder.fromSan(game, "Nce4")));
+        Assertions.assertThrows(RuntimeException.class, () -> OpeningBookBuilder.fromSan(game, "Ne4"));
+        Assertions.assertThrows(RuntimeException.class, () -> OpeningBookBuilder.fromSan(game, "Qd4"));
+    }
+
+    @Test
+    @DisplayName("Builds, maps and queries a book")
+    public void buildAndQuery() throws IOException {
+        var builder = new OpeningBookBuilder(8);
+        Assertions.assertEquals(3, builder.addPgn(new StringReader(PGN)));
+        builder.addLine(null, "e2e4 e7e5 f1c4");
+        builder.addLines(new StringReader("# comment\n\nd2d4 d7d5\n" + "4k3/8/8/8/8/8/8/4K2R w K - 0 1; e1g1\n"));
+        var path = directory.resolve("book.bin");
+        builder.write(path);
+        Assertions.assertEquals(16 + builder.size() * 16L, Files.size(path));
+
+        var book = OpeningBook.open(path);
+        Assertions.assertEquals(builder.size(), book.size());
+        var start = new ChessGame();
+        var moves = book.lookup(start.getZobristKey());
+        Assertions.assertEquals(2, moves.size());
+        for (var move : moves) {
+            switch (PackedMove.toUci(move.move())) {
+                case "e2e4" -> Assertions.assertEquals(3, move.weight());
+                case "d2d4" -> Assertions.assertEquals(1, move.weight());
+                default -> Assertions.fail("Unexpected book move " + PackedMove.toUci(move.move()));
+            }
+        }
+
+        var random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            int move = book.pick(start, random);
+            Assertions.assertTrue(start.legalMoves().contains(PackedMove.toChessMove(move)));
+        }
+        start.applyMove(PackedMove.fromUci("e2e4"));
+        start.applyMove(PackedMove.fromUci("e7e5"));
+        var reply = book.lookup(start.getZobristKey());
+        Assertions.assertEquals(2, reply.size(), "Nf3 and Bc4 after 1. e4 e5");
+
+        var castle = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1");
+        Assertions.assertTrue(PackedMove.is(book.pick(castle, random), PackedMove.CASTLE));
+        Assertions.assertEquals(SearchResult.NO_MOVE, book.pick(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), random));
+        Assertions.assertEquals(0, OpeningBook.empty().lookup(start.getZobristKey()).size());
+
+        Files.write(path, new byte[]{1, 2, 3});
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(path));
+    }
+}
@@ -0,0 +1,138 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MoveList;
+import chess.PackedMove;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+public class SearchTests {
+
+    private static String bestMove(String fen, SearchLimits limits) {
+        var game = ChessGame.fromFen(fen);
+        var result = new Search(game).search(limits);
+        Assertions.assertEquals(fen, game.toFen(), "Search did not restore the game");
+        return PackedMove.toUci(result.bestMove());
+    }
+
+    @Test
+    @DisplayName("Finds mate in one and mate in two")
+    public void findsMate() {
+        Assertions.assertEquals("a1a8", bestMove("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", SearchLimits.depth(2)));
+
+        var game = ChessGame.fromFen("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+        var result = new Search(game).search(SearchLimits.depth(3));
+        Assertions.assertEquals(new ChessMove("h5 f7"), result.move());
+        Assertions.assertTrue(result.isMate());
+        Assertions.assertTrue(result.score() > 0);
+
+        var mateInTwo = new Search(ChessGame.fromFen("7k/8/5K2/8/8/8/8/R7 w - - 0 1")).search(SearchLimits.depth(5));
+        Assertions.assertTrue(mateInTwo.isMate(), "Mate in two not found");
+        Assertions.assertEquals(Search.MATE - 3, mateInTwo.score());
+    }
+
+    @Test
+    @DisplayName("Takes hanging material and sees through exchanges")
+    public void material() {
+        Assertions.assertEquals("e4d5", bestMove("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1", SearchLimits.depth(2)));
+        // Rook takes the pawn only to be taken back by the other pawn
+        Assertions.assertNotEquals("d1d5", bestMove("4k3/8/2p5/3p4/8/8/8/3RK3 w - - 0 1", SearchLimits.depth(1)));
+    }
+
+    @Test
+    @DisplayName("No legal moves and time limits")
+    public void limits() {
+        var mated = new Search(ChessGame.fromFen("k6R/8/1K6/8/8/8/8/8 b - - 0 1")).search(SearchLimits.depth(4));
+        Assertions.assertEquals(SearchResult.NO_MOVE, mated.bestMove());
+        Assertions.assertNull(mated.move());
+        Assertions.assertEquals(-Search.MATE, mated.score());
+
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        long start = System.nanoTime();
+        var result = new Search(game).search(SearchLimits.time(200));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertTrue(millis < 1000, "Search took " + millis + " ms");
+        Assertions.assertTrue(result.depth() >= 1);
+        Assertions.assertTrue(game.legalMoves().contains(result.move()));
+    }
+
+    @Test
+    @DisplayName("Transposition table round trip and reuse")
+    public void transpositionTable() {
+        var table = new TranspositionTable(1);
+        Assertions.assertEquals(65536, table.capacity());
+        int move = PackedMove.fromUci("e7e8q") | PackedMove.CAPTURE;
+        table.store(0x1234_5678_9ABCL, move, -250, 7, TranspositionTable.LOWER, 3);
+        long entry = table.probe(0x1234_5678_9ABCL);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-250, TranspositionTable.score(entry, 3));
+        Assertions.assertEquals(7, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        Assertions.assertEquals(0L, table.probe(0x1234_5678_9ABCL + (1L << 40)), "Different key in the same slot");
+
+        table.store(42, 0, Search.MATE - 5, 4, TranspositionTable.EXACT, 2);
+        Assertions.assertEquals(Search.MATE - 7, TranspositionTable.score(table.probe(42), 4));
+        Assertions.assertEquals(2.0 / 3, table.hitRate(), 1e-9);
+
+        table.store(0x1234_5678_9ABCL, 0, 100, 3, TranspositionTable.UPPER, 0);
+        Assertions.assertEquals(7, TranspositionTable.depth(table.probe(0x1234_5678_9ABCL)), "Deeper entry replaced");
+        table.store(0x1234_5678_9ABCL, 0, 100, 3, TranspositionTable.EXACT, 0);
+        entry = table.probe(0x1234_5678_9ABCL);
+        Assertions.assertEquals(TranspositionTable.EXACT, TranspositionTable.bound(entry));
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        table.newSearch();
+        table.store(0x1234_5678_9ABCL, 0, 100, 1, TranspositionTable.UPPER, 0);
+        Assertions.assertEquals(1, TranspositionTable.depth(table.probe(0x1234_5678_9ABCL)));
+
+        var fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        var first = new Search(ChessGame.fromFen(fen), table).search(SearchLimits.depth(4));
+        long hits = table.getHits();
+        var second = new Search(ChessGame.fromFen(fen), table).search(SearchLimits.depth(4));
+        Assertions.assertEquals(first.bestMove(), second.bestMove());
+        Assertions.assertTrue(second.nodes() < first.nodes(), "Second search did not reuse the table");
+        Assertions.assertTrue(table.getHits() > hits);
+    }
+
+    @Test
+    @DisplayName("Principal variation and parallel search")
+    public void parallel() {
+        var fen = "7k/8/5K2/8/8/8/8/R7 w - - 0 1";
+        var depths = new ArrayList<SearchResult>();
+        var table = new TranspositionTable(4);
+        var result = ParallelSearch.search(ChessGame.fromFen(fen), SearchLimits.depth(5), 4, table, depths::add);
+        Assertions.assertEquals(1, table.currentGeneration(), "Every thread started a generation");
+        Assertions.assertEquals(Search.MATE - 3, result.score());
+        Assertions.assertEquals(3, result.principalVariation().length, result.principalVariationUci());
+        Assertions.assertEquals(result.bestMove(), result.principalVariation()[0]);
+        Assertions.assertFalse(depths.isEmpty());
+        for (int i = 1; i < depths.size(); i++) {
+            Assertions.assertTrue(depths.get(i).depth() > depths.get(i - 1).depth());
+        }
+
+        var game = ChessGame.fromFen(fen);
+        for (int move : result.principalVariation()) {
+            var moves = new MoveList();
+            game.legalMoves(moves);
+            Assertions.assertTrue(moves.contains(move), "Illegal move in line " + result.principalVariationUci());
+            game.applyMove(move);
+        }
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getStatus());
+
+        var kiwipete = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        var timed = ParallelSearch.search(kiwipete, SearchLimits.time(300), 2, depth -> { });
+        Assertions.assertTrue(kiwipete.legalMoves().contains(timed.move()));
+        Assertions.assertEquals("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", kiwipete.toFen());
+
+        var handle = new ParallelSearch.Handle();
+        handle.stop();
+        long start = System.currentTimeMillis();
+        var stopped = ParallelSearch.search(kiwipete, SearchLimits.time(5000), 2, new TranspositionTable(4),
+                depth -> { }, handle);
+        Assertions.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assertions.assertTrue(kiwipete.legalMoves().contains(stopped.move()));
+    }
+}
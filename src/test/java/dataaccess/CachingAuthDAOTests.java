@@ -0,0 +1,94 @@
+package dataaccess;
+
+import data.AuthData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CachingAuthDAOTests {
+
+    private static class FakeAuthDAO implements AuthDAO {
+        final Map<String, AuthData> tokens = new HashMap<>();
+        int lookups = 0;
+
+        @Override
+        public void createAuth(AuthData a) {
+            tokens.put(a.authToken(), a);
+        }
+
+        @Override
+        public AuthData getAuth(String authToken) {
+            lookups++;
+            return tokens.get(authToken);
+        }
+
+        @Override
+        public void deleteAuth(String authToken) {
+            tokens.remove(authToken);
+        }
+
+        @Override
+        public void clear() {
+            tokens.clear();
+        }
+    }
+
+    @Test
+    @DisplayName("Lookups are answered from memory")
+    public void readThrough() throws DataAccessException {
+        var store = new FakeAuthDAO();
+        store.createAuth(new AuthData("token", "user"));
+        var auth = new CachingAuthDAO(store, 100, 60_000, 60_000);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("user", auth.getAuth("token").username());
+            Assertions.assertNull(auth.getAuth("unknown"));
+        }
+        Assertions.assertEquals(2, store.lookups);
+        Assertions.assertEquals(8, auth.getHits());
+        Assertions.assertEquals(2, auth.getMisses());
+        Assertions.assertEquals(0.8, auth.hitRate(), 1e-9);
+
+        auth.createAuth(new AuthData("unknown", "other"));
+        Assertions.assertEquals("other", auth.getAuth("unknown").username());
+        Assertions.assertEquals(2, store.lookups);
+    }
+
+    @Test
+    @DisplayName("Deletes and clears take effect at once")
+    public void invalidation() throws DataAccessException {
+        var store = new FakeAuthDAO();
+        var auth = new CachingAuthDAO(store, 100, 60_000, 60_000);
+        auth.createAuth(new AuthData("a", "user"));
+        auth.createAuth(new AuthData("b", "user"));
+        Assertions.assertNotNull(auth.getAuth("a"));
+
+        auth.deleteAuth("a");
+        Assertions.assertNull(auth.getAuth("a"));
+        Assertions.assertNotNull(auth.getAuth("b"));
+        auth.clear();
+        Assertions.assertNull(auth.getAuth("b"));
+        Assertions.assertEquals(0, store.tokens.size());
+    }
+
+    @Test
+    @DisplayName("Entries expire and the cache stays bounded")
+    public void expiry() throws Exception {
+        var store = new FakeAuthDAO();
+        var auth = new CachingAuthDAO(store, 2, 60_000, 20);
+        Assertions.assertNull(auth.getAuth("late"));
+        store.createAuth(new AuthData("late", "user"));
+        Assertions.assertNull(auth.getAuth("late"));
+        Thread.sleep(40);
+        Assertions.assertEquals("user", auth.getAuth("late").username());
+
+        auth.getAuth("x");
+        auth.getAuth("y");
+        Assertions.assertEquals(2, auth.size());
+        int before = store.lookups;
+        auth.getAuth("late");
+        Assertions.assertEquals(before + 1, store.lookups);
+    }
+}
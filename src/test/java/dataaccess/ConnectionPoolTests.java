@@ -0,0 +1,143 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectionPoolTests {
+
+    /*
+     * Stands in for a database connection: open until closed, valid while
+     * valid is true.
+     */
+    private static class FakeConnection {
+        boolean closed = false;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int rollbacks = 0;
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed = true;
+                            yield null;
+                        }
+                        case "isClosed" -> closed;
+                        case "isValid" -> valid && !closed;
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (Boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rollbacks++;
+                            yield null;
+                        }
+                        default -> null;
+                    });
+        }
+    }
+
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    private ConnectionPool pool(int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis) {
+        return new ConnectionPool(() -> {
+            var fake = new FakeConnection();
+            opened.add(fake);
+            return fake.connection();
+        }, maxSize, acquireTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis);
+    }
+
+    @Test
+    @DisplayName("Closed connections go back to the pool")
+    public void reuse() throws Exception {
+        try (var pool = pool(2, 100, 60_000, 60_000)) {
+            for (int i = 0; i < 5; i++) {
+                try (var conn = pool.getConnection()) {
+                    Assertions.assertEquals(1, pool.getActive());
+                }
+            }
+            Assertions.assertEquals(1, opened.size());
+            Assertions.assertFalse(opened.get(0).closed);
+            Assertions.assertEquals(5, pool.getBorrowed());
+            Assertions.assertEquals(1, pool.getIdle());
+            Assertions.assertEquals(0, pool.getActive());
+        }
+        Assertions.assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    @DisplayName("Borrowers time out when the pool is used up")
+    public void acquireTimeout() throws Exception {
+        try (var pool = pool(2, 50, 60_000, 60_000)) {
+            var first = pool.getConnection();
+            var second = pool.getConnection();
+            var ex = Assertions.assertThrows(DataAccessException.class, pool::getConnection);
+            Assertions.assertEquals(503, ex.getStatus());
+            Assertions.assertEquals(1, pool.getTimeouts());
+
+            first.close();
+            first.close();
+            Assertions.assertTrue(first.isClosed());
+            Assertions.assertThrows(SQLException.class, first::createStatement);
+            try (var third = pool.getConnection()) {
+                Assertions.assertEquals(2, pool.getActive());
+            }
+            second.close();
+            Assertions.assertEquals(2, opened.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Broken, old and idle connections are replaced")
+    public void retire() throws Exception {
+        try (var pool = pool(2, 100, 60_000, 60_000)) {
+            pool.getConnection().close();
+            opened.get(0).valid = false;
+            Thread.sleep(600);
+            try (var conn = pool.getConnection()) {
+                Assertions.assertEquals(2, opened.size());
+            }
+            Assertions.assertTrue(opened.get(0).closed);
+            Assertions.assertEquals(1, pool.getValidationFailures());
+        }
+
+        try (var pool = pool(2, 100, 60_000, 1)) {
+            opened.clear();
+            pool.getConnection().close();
+            Thread.sleep(5);
+            pool.getConnection().close();
+            Assertions.assertEquals(2, opened.size());
+            Assertions.assertTrue(opened.get(0).closed);
+        }
+
+        try (var pool = pool(2, 100, 1, 60_000)) {
+            opened.clear();
+            pool.getConnection().close();
+            Thread.sleep(5);
+            pool.evictIdle();
+            Assertions.assertEquals(0, pool.getIdle());
+            Assertions.assertTrue(opened.get(0).closed);
+            Assertions.assertEquals(1, pool.getRetired());
+        }
+    }
+
+    @Test
+    @DisplayName("Unfinished transactions are rolled back on return")
+    public void rollback() throws Exception {
+        try (var pool = pool(1, 100, 60_000, 60_000)) {
+            try (var conn = pool.getConnection()) {
+                conn.setAutoCommit(false);
+            }
+            Assertions.assertEquals(1, opened.get(0).rollbacks);
+            Assertions.assertTrue(opened.get(0).autoCommit);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.PackedMove;
+import data.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class WriteBehindGameDAOTests {
+
+    /*
+     * Keeps games as FEN strings, like a database keeps its own copy, and
+     * counts the calls that would be queries.
+     */
+    private static class FakeGameDAO implements GameDAO {
+        final Map<String, String[]> rows = new ConcurrentHashMap<>();
+        int reads = 0;
+        int writes = 0;
+        int batches = 0;
+        final Set<String> refused = new HashSet<>();
+
+        @Override
+        public String createGame() {
+            var roomCode = "ROOM" + rows.size();
+            rows.put(roomCode, new String[]{null, null, new ChessGame().toFen()});
+            return roomCode;
+        }
+
+        @Override
+        public GameData getGame(String roomCode) {
+            reads++;
+            var row = rows.get(roomCode);
+            return (row == null) ? null : new GameData(roomCode, row[0], row[1], ChessGame.fromFen(row[2]));
+        }
+
+        @Override
+        public Collection<GameData> listGames() {
+            var games = new ArrayList<GameData>();
+            rows.forEach((roomCode, row) -> games.add(new GameData(roomCode, row[0], row[1], null)));
+            return games;
+        }
+
+        @Override
+        public void updateGame(GameData u) throws DataAccessException {
+            if (refused.contains(u.roomCode())) {
+                throw new DataAccessException(409, "Error: game changed since it was read");
+            }
+            writes++;
+            rows.put(u.roomCode(), new String[]{u.whiteUsername(), u.blackUsername(), u.game().toFen()});
+        }
+
+        @Override
+        public void updateGames(Collection<GameData> games) throws DataAccessException {
+            batches++;
+            GameDAO.super.updateGames(games);
+        }
+
+        @Override
+        public void clear() {
+            rows.clear();
+        }
+    }
+
+    @Test
+    @DisplayName("Moves are kept in memory and written together")
+    public void writeBehind() throws Exception {
+        var store = new FakeGameDAO();
+        try (var games = new WriteBehindGameDAO(store, 60_000, 60_000)) {
+            var roomCode = games.createGame();
+            for (var move : new String[]{"e2e4", "e7e5", "g1f3"}) {
+                var gameData = games.getGame(roomCode);
+                gameData.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci(move)));
+                games.updateGame(gameData);
+            }
+            Assertions.assertEquals(1, store.reads);
+            Assertions.assertEquals(0, store.writes);
+            Assertions.assertEquals(new ChessGame().toFen(), store.rows.get(roomCode)[2]);
+
+            var joined = games.getGame(roomCode);
+            games.updateGame(new GameData(roomCode, "white", null, joined.game()));
+            var listed = games.listGames().iterator().next();
+            Assertions.assertEquals("white", listed.whiteUsername());
+
+            games.flush();
+            Assertions.assertEquals(1, store.writes);
+            Assertions.assertEquals(1, store.batches);
+            Assertions.assertEquals(joined.game().toFen(), store.rows.get(roomCode)[2]);
+            Assertions.assertEquals("white", store.rows.get(roomCode)[0]);
+
+            games.flush();
+            Assertions.assertEquals(1, store.batches);
+        }
+    }
+
+    @Test
+    @DisplayName("Callers get their own copy of a game")
+    public void copies() throws Exception {
+        var store = new FakeGameDAO();
+        try (var games = new WriteBehindGameDAO(store, 60_000, 60_000)) {
+            var roomCode = games.createGame();
+            var first = games.getGame(roomCode);
+            first.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci("e2e4")));
+            Assertions.assertEquals(ChessGame.TeamColor.WHITE, games.getGame(roomCode).game().getTeamTurn());
+
+            games.updateGame(first);
+            first.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci("e7e5")));
+            Assertions.assertEquals(ChessGame.TeamColor.BLACK, games.getGame(roomCode).game().getTeamTurn());
+            Assertions.assertNull(games.getGame("NOROOM"));
+            Assertions.assertThrows(DataAccessException.class,
+                    () -> games.updateGame(new GameData(null, null, null, first.game())));
+        }
+    }
+
+    @Test
+    @DisplayName("Stale games are refused instead of undoing moves")
+    public void stale() throws Exception {
+        var store = new FakeGameDAO();
+        try (var games = new WriteBehindGameDAO(store, 60_000, 60_000)) {
+            var roomCode = games.createGame();
+            var stale = games.getGame(roomCode);
+            var moved = games.getGame(roomCode);
+            moved.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci("e2e4")));
+            games.updateGame(moved);
+
+            var ex = Assertions.assertThrows(DataAccessException.class,
+                    () -> games.updateGame(new GameData(roomCode, "white", null, stale.game())));
+            Assertions.assertEquals(409, ex.getStatus());
+            Assertions.assertEquals(ChessGame.TeamColor.BLACK, games.getGame(roomCode).game().getTeamTurn());
+
+            var otherRoom = games.createGame();
+            games.updateGame(new GameData(otherRoom, "black", null, games.getGame(otherRoom).game()));
+            store.refused.add(roomCode);
+            games.flush();
+            Assertions.assertEquals("black", store.rows.get(otherRoom)[0]);
+            Assertions.assertEquals(1, games.size());
+            Assertions.assertEquals(new ChessGame().toFen(), games.getGame(roomCode).game().toFen());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle rooms are written and dropped, and close writes the rest")
+    public void idleAndClose() throws Exception {
+        var store = new FakeGameDAO();
+        var games = new WriteBehindGameDAO(store, 20, 50);
+        var idleRoom = games.createGame();
+        var gameData = games.getGame(idleRoom);
+        gameData.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci("d2d4")));
+        games.updateGame(gameData);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (games.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0, games.size());
+        Assertions.assertEquals(gameData.game().toFen(), store.rows.get(idleRoom)[2]);
+
+        games = new WriteBehindGameDAO(store, 60_000, 60_000);
+        gameData = games.getGame(idleRoom);
+        gameData.game().makeMove(PackedMove.toChessMove(PackedMove.fromUci("d7d5")));
+        games.updateGame(gameData);
+        games.close();
+        Assertions.assertEquals(gameData.game().toFen(), store.rows.get(idleRoom)[2]);
+    }
+}